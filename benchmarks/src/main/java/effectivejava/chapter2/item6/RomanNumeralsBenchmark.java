@@ -0,0 +1,46 @@
+package effectivejava.chapter2.item6;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * RomanNumerals claims that compiling the Pattern once and reusing it is much
+ * faster than calling String.matches, which compiles a fresh Pattern on every
+ * call. The cost of matching grows with the length of the numeral while the
+ * cost of compiling does not, so the gap should narrow as the input grows.
+ * RomanNumeralDfa avoids the Matcher and the backtracking altogether.
+ *
+ */
+// JMH benchmark for RomanNumerals (Item 6)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RomanNumeralsBenchmark {
+	@Param({ "I", "MCMLXXVI", "MMMDCCCLXXXVIII", "MMMMMMMMMMMMMMMMDCCCLXXXVIII" })
+	public String numeral;
+
+	@Benchmark
+	public boolean slow() {
+		return RomanNumerals.isRomanNumeralSlow(numeral);
+	}
+
+	@Benchmark
+	public boolean fast() {
+		return RomanNumerals.isRomanNumeralFast(numeral);
+	}
+
+	@Benchmark
+	public boolean dfa() {
+		return RomanNumeralDfa.isRomanNumeral(numeral);
+	}
+
+	@Benchmark
+	public int dfaParse() {
+		return RomanNumeralDfa.parse(numeral);
+	}
+}
@@ -0,0 +1,41 @@
+package effectivejava.chapter2.item6;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * Sum claims that declaring the accumulator as a Long instead of a long costs
+ * an order of magnitude, because every addition boxes a new Long. Sum.sum is
+ * private and always runs to Integer.MAX_VALUE, so its loop is reproduced here
+ * with the bound as a parameter.
+ *
+ */
+// JMH benchmark for Sum (Item 6)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SumBenchmark {
+	@Param({ "1000", "1000000", "100000000" })
+	public long n;
+
+	@Benchmark
+	public long boxed() {
+		Long sum = 0L;
+		for (long i = 0; i <= n; i++)
+			sum += i;
+		return sum;
+	}
+
+	@Benchmark
+	public long primitive() {
+		long sum = 0L;
+		for (long i = 0; i <= n; i++)
+			sum += i;
+		return sum;
+	}
+}
@@ -0,0 +1,75 @@
+package effectivejava.chapter2.item6;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import effectivejava.chapter2.item6.Summation.Strategy;
+
+/**
+ *
+ * Compares the Summation strategies over long arrays, int arrays and ranges.
+ * Whether SCALAR or UNROLLED wins depends on whether the JIT vectorizes the
+ * loop on the machine at hand; PARALLEL should win only for the largest
+ * sizes, and only on a machine with several cores.
+ *
+ */
+// JMH benchmark for Summation (Item 6)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummationBenchmark {
+	@Param({ "1000", "1000000", "100000000" })
+	public int n;
+
+	@Param({ "SCALAR", "UNROLLED", "PARALLEL" })
+	public Strategy strategy;
+
+	private long[] longs;
+	private int[] ints;
+	private double[] doubles;
+
+	@Setup
+	public void setup() {
+		longs = new long[n];
+		ints = new int[n];
+		doubles = new double[n];
+		for (int i = 0; i < n; i++) {
+			longs[i] = ints[i] = i;
+			doubles[i] = i / 10.;
+		}
+	}
+
+	@Benchmark
+	public long longArray() {
+		return Summation.sum(longs, strategy);
+	}
+
+	@Benchmark
+	public long longArrayExact() {
+		return Summation.sumExact(longs, strategy);
+	}
+
+	@Benchmark
+	public long intArray() {
+		return Summation.sum(ints, strategy);
+	}
+
+	@Benchmark
+	public long range() {
+		return Summation.sumRange(0, n, strategy);
+	}
+
+	@Benchmark
+	public double doubleArray() {
+		return Summation.sum(doubles, strategy);
+	}
+
+	@Benchmark
+	public double doubleArrayCompensated() {
+		return Summation.sumCompensated(doubles, strategy);
+	}
+}
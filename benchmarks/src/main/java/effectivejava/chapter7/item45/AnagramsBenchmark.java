@@ -0,0 +1,82 @@
+package effectivejava.chapter7.item45;
+
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * Compares the three ways of grouping anagrams shown in Item 45: the
+ * iterative loop of Anagrams, the tasteful stream pipeline of
+ * AnagramsEfficient, and the overused stream pipeline of
+ * AnagramsWithStreamsOveruse, whose key is built with a nested stream of
+ * chars. The examples read a fixed handful of words, so each grouping is
+ * reproduced here over a synthetic dictionary of the given size, in which
+ * every word has a few anagrams.
+ *
+ */
+// JMH benchmark for the anagram programs (Item 45)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnagramsBenchmark {
+	@Param({ "1000", "100000" })
+	public int words;
+
+	private List<String> dictionary;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		dictionary = new ArrayList<>(words);
+		while (dictionary.size() < words) {
+			char[] a = new char[4 + random.nextInt(8)];
+			for (int i = 0; i < a.length; i++)
+				a[i] = (char) ('a' + random.nextInt(26));
+			for (int copies = 1 + random.nextInt(4); copies > 0 && dictionary.size() < words; copies--) {
+				shuffle(a, random);
+				dictionary.add(new String(a));
+			}
+		}
+	}
+
+	@Benchmark
+	public Map<String, Set<String>> iterative() {
+		Map<String, Set<String>> groups = new HashMap<>();
+		for (String word : dictionary)
+			groups.computeIfAbsent(alphabetize(word), (unused) -> new TreeSet<>()).add(word);
+		return groups;
+	}
+
+	@Benchmark
+	public Map<String, List<String>> streams() {
+		return dictionary.stream().collect(groupingBy(word -> alphabetize(word)));
+	}
+
+	@Benchmark
+	public Map<String, List<String>> streamsOveruse() {
+		return dictionary.stream().collect(groupingBy(word -> word.chars().sorted()
+				.collect(StringBuilder::new, (sb, c) -> sb.append((char) c), StringBuilder::append).toString()));
+	}
+
+	private static String alphabetize(String s) {
+		char[] a = s.toCharArray();
+		Arrays.sort(a);
+		return new String(a);
+	}
+
+	private static void shuffle(char[] a, Random random) {
+		for (int i = a.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			char t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
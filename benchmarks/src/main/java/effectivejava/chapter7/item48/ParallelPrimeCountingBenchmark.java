@@ -0,0 +1,46 @@
+package effectivejava.chapter7.item48;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * ParallelPrimeCounting claims that adding a call to parallel speeds up the
+ * prime-counting pipeline roughly in proportion to the number of cores. For
+ * small n the cost of splitting the work dominates, so the speedup should
+ * appear only as n grows. PrimeSieve avoids testing each number on its own
+ * altogether.
+ *
+ */
+// JMH benchmark for ParallelPrimeCounting (Item 48)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelPrimeCountingBenchmark {
+	@Param({ "10000", "100000", "1000000" })
+	public long n;
+
+	@Benchmark
+	public long sequential() {
+		return ParallelPrimeCounting.piNormal(n);
+	}
+
+	@Benchmark
+	public long parallel() {
+		return ParallelPrimeCounting.pi(n);
+	}
+
+	@Benchmark
+	public long segmentedSieve() {
+		return PrimeSieve.piSieve(n);
+	}
+
+	@Benchmark
+	public long meisselLehmer() {
+		return PrimeSieve.piMeisselLehmer(n);
+	}
+}
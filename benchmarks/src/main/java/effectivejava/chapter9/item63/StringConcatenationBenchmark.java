@@ -0,0 +1,47 @@
+package effectivejava.chapter9.item63;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * StringConcatenation claims that building a statement with the string
+ * concatenation operator takes time quadratic in the number of items, while
+ * StringBuilder takes linear time. The number of items is a parameter, so the
+ * results show the two growth rates directly.
+ *
+ */
+// JMH benchmark for StringConcatenation (Item 63)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringConcatenationBenchmark {
+	@Param({ "10", "100", "1000", "10000" })
+	public int numItems;
+
+	private StringConcatenation concatenation;
+
+	@Setup
+	public void setup() {
+		concatenation = new StringConcatenation() {
+			@Override
+			public int numItems() {
+				return numItems;
+			}
+		};
+	}
+
+	@Benchmark
+	public String concatenation() {
+		return concatenation.statement();
+	}
+
+	@Benchmark
+	public String stringBuilder() {
+		return concatenation.statementPreferred();
+	}
+}
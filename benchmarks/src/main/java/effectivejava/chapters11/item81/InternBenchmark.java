@@ -0,0 +1,54 @@
+package effectivejava.chapters11.item81;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *
+ * Intern claims that calling get before putIfAbsent is faster, because
+ * ConcurrentHashMap is optimized for retrieval and most calls find the string
+ * already present. Every string is interned during setup, so each measured
+ * call is a hit, and the lookups use distinct but equal strings, as callers
+ * of an intern method would. Run with -t to see how the gap changes under
+ * contention.
+ *
+ */
+// JMH benchmark for Intern (Item 81)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InternBenchmark {
+	@Param({ "16", "1024", "65536" })
+	public int distinctStrings; // A power of two, so the cursor can wrap with a mask
+
+	private String[] strings;
+
+	@Setup
+	public void setup() {
+		strings = new String[distinctStrings];
+		for (int i = 0; i < distinctStrings; i++) {
+			String s = "string-" + i;
+			Intern.intern(s);
+			strings[i] = new String(s); // Equal to, but not the same as, the interned string
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Benchmark
+	public String internSlow(Cursor cursor) {
+		return Intern.internSlow(strings[cursor.next++ & (distinctStrings - 1)]);
+	}
+
+	@Benchmark
+	public String intern(Cursor cursor) {
+		return Intern.intern(strings[cursor.next++ & (distinctStrings - 1)]);
+	}
+}
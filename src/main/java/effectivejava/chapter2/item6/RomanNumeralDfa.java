@@ -0,0 +1,296 @@
+package effectivejava.chapter2.item6;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ *
+ * Caching the Pattern in RomanNumerals avoids compiling it on every call, but
+ * each match still creates a Matcher and runs a backtracking interpreter over
+ * the input. The language of Roman numerals is regular, and a small one at
+ * that, so it can be recognized by a deterministic finite automaton that looks
+ * at each character exactly once and creates no objects at all.
+ *
+ * The automaton is compiled by hand into two tables indexed by state and
+ * character class: the next state, and the amount to add to the value of the
+ * numeral. Because a subtractive pair such as CM is its own pair of
+ * transitions (C adds 100, then M adds 800), the same walk that validates a
+ * numeral also converts it. It accepts exactly the strings matched by
+ * RomanNumerals.ROMAN, including any number of leading Ms.
+ *
+ * The parse and validation methods accept a CharSequence, or a range of a byte
+ * array holding ASCII text, so callers reading numerals from a file or socket
+ * need never create a String. The batch methods process an array of inputs in
+ * one call; since no Roman numeral is zero, parseAll reports invalid inputs as
+ * 0 rather than throwing.
+ *
+ */
+// Table-driven DFA for validating, parsing and formatting Roman numerals
+public class RomanNumeralDfa {
+	private RomanNumeralDfa() {
+	} // Noninstantiable
+
+	// Character classes: I V X L C D M, and everything else
+	private static final int CLASSES = 8;
+	private static final int OTHER = 7;
+	private static final byte[] CLASS = new byte[128];
+	static {
+		Arrays.fill(CLASS, (byte) OTHER);
+		String letters = "IVXLCDM";
+		for (int i = 0; i < letters.length(); i++)
+			CLASS[letters.charAt(i)] = (byte) i;
+	}
+
+	// States: DEAD rejects everything, START is the only other nonaccepting state
+	private static final int DEAD = 0, START = 1, THOUSANDS = 2;
+
+	// Within each decimal place: one to three ones, five and zero to three
+	// ones, or a finished subtractive pair such as IV or IX
+	private static final int ONE = 0, TWO = 1, THREE = 2, FIVE = 3, FIVE_ONE = 4, FIVE_TWO = 5, FIVE_THREE = 6,
+			DONE = 7, PLACE_STATES = 8;
+	private static final int PLACES = 3; // Hundreds, tens and ones
+	private static final int STATES = THOUSANDS + 1 + PLACES * PLACE_STATES;
+
+	private static final int[] NEXT = new int[STATES * CLASSES];
+	private static final int[] VALUE = new int[STATES * CLASSES];
+
+	static {
+		for (int place = 0; place < PLACES; place++) {
+			int u = unit(place);
+			int one = oneClass(place), five = one + 1, ten = one + 2; // C D M, X L C, I V X
+			int base = state(place, 0);
+			for (int s = 0; s < PLACE_STATES; s++)
+				for (int c = 0; c < CLASSES; c++)
+					delegate(base + s, place, c);
+			set(base + ONE, one, base + TWO, u);
+			set(base + TWO, one, base + THREE, u);
+			set(base + ONE, five, base + DONE, 3 * u);
+			set(base + ONE, ten, base + DONE, 8 * u);
+			set(base + FIVE, one, base + FIVE_ONE, u);
+			set(base + FIVE_ONE, one, base + FIVE_TWO, u);
+			set(base + FIVE_TWO, one, base + FIVE_THREE, u);
+		}
+		for (int c = 0; c < CLASSES; c++) {
+			delegate(START, -1, c);
+			delegate(THOUSANDS, -1, c);
+		}
+		set(START, CLASS['M'], THOUSANDS, 1000);
+		set(THOUSANDS, CLASS['M'], THOUSANDS, 1000);
+	}
+
+	private static int state(int place, int s) {
+		return THOUSANDS + 1 + place * PLACE_STATES + s;
+	}
+
+	private static int unit(int place) {
+		return place == 0 ? 100 : place == 1 ? 10 : 1;
+	}
+
+	private static int oneClass(int place) {
+		return 4 - 2 * place;
+	}
+
+	private static void set(int state, int c, int next, int value) {
+		NEXT[state * CLASSES + c] = next;
+		VALUE[state * CLASSES + c] = value;
+	}
+
+	// On a character that a later place may start with, moves into that place
+	// as if it had been entered afresh; otherwise rejects.
+	private static void delegate(int state, int place, int c) {
+		int next = DEAD, value = 0;
+		for (int p = place + 1; p < PLACES && next == DEAD; p++) {
+			if (c == oneClass(p)) {
+				next = state(p, ONE);
+				value = unit(p);
+			} else if (c == oneClass(p) + 1) {
+				next = state(p, FIVE);
+				value = 5 * unit(p);
+			}
+		}
+		set(state, c, next, value);
+	}
+
+	private static int classOf(int ch) {
+		return ch >= 0 && ch < 128 ? CLASS[ch] : OTHER;
+	}
+
+	// Returns the value of the numeral, or 0 if it is invalid or too large
+	private static int run(CharSequence s, int start, int end) {
+		int state = START;
+		long value = 0;
+		for (int i = start; i < end && state != DEAD; i++) {
+			int t = state * CLASSES + classOf(s.charAt(i));
+			state = NEXT[t];
+			value += VALUE[t];
+		}
+		return state > START && value <= Integer.MAX_VALUE ? (int) value : 0;
+	}
+
+	private static int run(byte[] a, int off, int len) {
+		int state = START;
+		long value = 0;
+		for (int i = off, end = off + len; i < end && state != DEAD; i++) {
+			int t = state * CLASSES + classOf(a[i]);
+			state = NEXT[t];
+			value += VALUE[t];
+		}
+		return state > START && value <= Integer.MAX_VALUE ? (int) value : 0;
+	}
+
+	public static boolean isRomanNumeral(CharSequence s) {
+		return isRomanNumeral(s, 0, s.length());
+	}
+
+	public static boolean isRomanNumeral(CharSequence s, int start, int end) {
+		Objects.checkFromToIndex(start, end, s.length());
+		int state = START;
+		for (int i = start; i < end && state != DEAD; i++)
+			state = NEXT[state * CLASSES + classOf(s.charAt(i))];
+		return state > START;
+	}
+
+	public static boolean isRomanNumeral(byte[] a, int off, int len) {
+		Objects.checkFromIndexSize(off, len, a.length);
+		int state = START;
+		for (int i = off, end = off + len; i < end && state != DEAD; i++)
+			state = NEXT[state * CLASSES + classOf(a[i])];
+		return state > START;
+	}
+
+	/**
+	 * Returns the value of the given Roman numeral.
+	 *
+	 * @throws NumberFormatException if s is not a Roman numeral, or if its value
+	 *                               exceeds Integer.MAX_VALUE
+	 */
+	public static int parse(CharSequence s) {
+		return parse(s, 0, s.length());
+	}
+
+	public static int parse(CharSequence s, int start, int end) {
+		Objects.checkFromToIndex(start, end, s.length());
+		int value = run(s, start, end);
+		if (value == 0)
+			throw new NumberFormatException("Not a Roman numeral: " + s.subSequence(start, end));
+		return value;
+	}
+
+	public static int parse(byte[] a, int off, int len) {
+		Objects.checkFromIndexSize(off, len, a.length);
+		int value = run(a, off, len);
+		if (value == 0)
+			throw new NumberFormatException("Not a Roman numeral: " + new String(a, off, len, StandardCharsets.US_ASCII));
+		return value;
+	}
+
+	// Digit spellings for hundreds, tens and ones, indexed by digit
+	private static final String[][] DIGITS = {
+			{ "", "C", "CC", "CCC", "CD", "D", "DC", "DCC", "DCCC", "CM" },
+			{ "", "X", "XX", "XXX", "XL", "L", "LX", "LXX", "LXXX", "XC" },
+			{ "", "I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX" } };
+
+	/**
+	 * Returns the number of characters in the Roman numeral for n.
+	 *
+	 * @throws IllegalArgumentException if n is not positive
+	 */
+	public static int formattedLength(int n) {
+		checkPositive(n);
+		return n / 1000 + DIGITS[0][n / 100 % 10].length() + DIGITS[1][n / 10 % 10].length()
+				+ DIGITS[2][n % 10].length();
+	}
+
+	public static String format(int n) {
+		return formatTo(n, new StringBuilder(formattedLength(n))).toString();
+	}
+
+	public static StringBuilder formatTo(int n, StringBuilder sb) {
+		checkPositive(n);
+		for (int m = n / 1000; m > 0; m--)
+			sb.append('M');
+		return sb.append(DIGITS[0][n / 100 % 10]).append(DIGITS[1][n / 10 % 10]).append(DIGITS[2][n % 10]);
+	}
+
+	/**
+	 * Writes the Roman numeral for n into dst as ASCII, starting at off, and
+	 * returns the number of bytes written.
+	 *
+	 * @throws IndexOutOfBoundsException if dst has fewer than formattedLength(n)
+	 *                                   bytes from off
+	 */
+	public static int format(int n, byte[] dst, int off) {
+		int len = formattedLength(n);
+		Objects.checkFromIndexSize(off, len, dst.length);
+		int i = off;
+		for (int m = n / 1000; m > 0; m--)
+			dst[i++] = 'M';
+		for (int place = 0; place < PLACES; place++) {
+			String digit = DIGITS[place][n / unit(place) % 10];
+			for (int j = 0; j < digit.length(); j++)
+				dst[i++] = (byte) digit.charAt(j);
+		}
+		return len;
+	}
+
+	private static void checkPositive(int n) {
+		if (n <= 0)
+			throw new IllegalArgumentException("No Roman numeral for " + n);
+	}
+
+	// Batch API
+
+	public static boolean[] validateAll(CharSequence[] inputs) {
+		boolean[] result = new boolean[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+			result[i] = isRomanNumeral(inputs[i]);
+		return result;
+	}
+
+	/**
+	 * Parses each input into the corresponding element of values, storing 0 for
+	 * inputs that are not valid Roman numerals, and returns the number of valid
+	 * inputs.
+	 */
+	public static int parseAll(CharSequence[] inputs, int[] values) {
+		if (values.length < inputs.length)
+			throw new IllegalArgumentException("values.length " + values.length + " < inputs.length " + inputs.length);
+		int valid = 0;
+		for (int i = 0; i < inputs.length; i++)
+			if ((values[i] = run(inputs[i], 0, inputs[i].length())) != 0)
+				valid++;
+		return valid;
+	}
+
+	public static String[] formatAll(int[] values) {
+		String[] result = new String[values.length];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			sb.setLength(0);
+			result[i] = formatTo(values[i], sb).toString();
+		}
+		return result;
+	}
+
+	public static void main(String[] args) {
+		int numSets = Integer.parseInt(args[0]);
+		int numReps = Integer.parseInt(args[1]);
+		boolean b = false;
+
+		for (int i = 0; i < numSets; i++) {
+			long start = System.nanoTime();
+			for (int j = 0; j < numReps; j++) {
+				b ^= isRomanNumeral("MCMLXXVI");
+			}
+			long end = System.nanoTime();
+			System.out.println(((end - start) / (1_000. * numReps)) + " \u03bcs.");
+		}
+
+		// Prevents VM from optimizing away everything.
+		if (!b)
+			System.out.println();
+
+		System.out.println(parse("MCMLXXVI") + " " + format(1976));
+	}
+}
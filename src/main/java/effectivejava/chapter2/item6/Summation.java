@@ -0,0 +1,358 @@
+package effectivejava.chapter2.item6;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ *
+ * Sum shows how much an unintended Long accumulator costs. Once the boxing is
+ * gone, the remaining cost of a sum is the loop itself, and how that loop is
+ * shaped matters too. This class sums arrays and ranges using one of several
+ * strategies, chosen at run time:
+ *
+ * SCALAR is the plain counted loop with a single accumulator. It is the shape
+ * the JIT compiler recognizes best, and on most hardware it is compiled to
+ * SIMD instructions without any help.
+ *
+ * UNROLLED keeps four independent accumulators, so consecutive additions do
+ * not wait on one another. This helps where the JIT does not vectorize the
+ * loop, such as the sum of a range, whose loop variable is a long.
+ *
+ * PARALLEL splits the input in half recursively in the common fork-join pool
+ * and sums each small enough piece with the UNROLLED loop. As with parallel
+ * streams (Item 48), it pays off only for large inputs.
+ *
+ * The plain sums wrap around on overflow, like the + operator. sumExact
+ * instead throws if the true sum of a long array does not fit in a long,
+ * even if some intermediate sum overflows and comes back. It adds the high
+ * and low 32 bits of each element separately, which can neither overflow nor
+ * depend on the order of the additions. No such method is needed for int
+ * arrays, whose sums always fit in a long.
+ *
+ * Floating-point addition is not associative, so the strategies may return
+ * slightly different double sums. sumCompensated tracks the rounding error of
+ * each addition and adds it back at the end (Kahan-Babuska summation). Its
+ * result is as accurate as summing at twice the precision and is largely
+ * independent of strategy. The compensated and exact sums each carry two
+ * accumulators already, so for them UNROLLED runs the SCALAR loop.
+ *
+ */
+// Summation of arrays and ranges with selectable strategies
+public class Summation {
+	private Summation() {
+	} // Noninstantiable
+
+	public enum Strategy {
+		SCALAR, UNROLLED, PARALLEL
+	}
+
+	// Below this many elements, PARALLEL sums sequentially
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	// long arrays
+
+	public static long sum(long[] a, Strategy strategy) {
+		return sum(a, 0, a.length, strategy);
+	}
+
+	public static long sum(long[] a, int from, int to, Strategy strategy) {
+		Objects.checkFromToIndex(from, to, a.length);
+		switch (strategy) {
+		case SCALAR:
+			return scalar(a, from, to);
+		case UNROLLED:
+			return unrolled(a, from, to);
+		default:
+			return parallel(from, to, (lo, hi) -> unrolled(a, (int) lo, (int) hi), Long::sum);
+		}
+	}
+
+	private static long scalar(long[] a, int from, int to) {
+		long sum = 0;
+		for (int i = from; i < to; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	private static long unrolled(long[] a, int from, int to) {
+		long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for (; i <= to - 4; i += 4) {
+			s0 += a[i];
+			s1 += a[i + 1];
+			s2 += a[i + 2];
+			s3 += a[i + 3];
+		}
+		for (; i < to; i++)
+			s0 += a[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Returns the sum of the elements of a.
+	 *
+	 * @throws ArithmeticException if the sum does not fit in a long
+	 */
+	public static long sumExact(long[] a, Strategy strategy) {
+		return sumExact(a, 0, a.length, strategy);
+	}
+
+	public static long sumExact(long[] a, int from, int to, Strategy strategy) {
+		Objects.checkFromToIndex(from, to, a.length);
+		long[] halves = strategy == Strategy.PARALLEL
+				? parallel(from, to, (lo, hi) -> halves(a, (int) lo, (int) hi),
+						(x, y) -> new long[] { x[0] + y[0], x[1] + y[1] })
+				: halves(a, from, to);
+
+		// The sum is high * 2^32 + low; normalize low to [0, 2^32)
+		long high = halves[0] + (halves[1] >>> 32);
+		long low = halves[1] & 0xFFFF_FFFFL;
+		if (high < Integer.MIN_VALUE || high > Integer.MAX_VALUE)
+			throw new ArithmeticException("long overflow");
+		return (high << 32) + low;
+	}
+
+	// Sums of the signed high and unsigned low halves, which fit in a long for
+	// any array, since it has fewer than 2^31 elements
+	private static long[] halves(long[] a, int from, int to) {
+		long high = 0, low = 0;
+		for (int i = from; i < to; i++) {
+			high += a[i] >> 32;
+			low += a[i] & 0xFFFF_FFFFL;
+		}
+		return new long[] { high, low };
+	}
+
+	// int arrays
+
+	public static long sum(int[] a, Strategy strategy) {
+		return sum(a, 0, a.length, strategy);
+	}
+
+	public static long sum(int[] a, int from, int to, Strategy strategy) {
+		Objects.checkFromToIndex(from, to, a.length);
+		switch (strategy) {
+		case SCALAR:
+			return scalar(a, from, to);
+		case UNROLLED:
+			return unrolled(a, from, to);
+		default:
+			return parallel(from, to, (lo, hi) -> unrolled(a, (int) lo, (int) hi), Long::sum);
+		}
+	}
+
+	private static long scalar(int[] a, int from, int to) {
+		long sum = 0;
+		for (int i = from; i < to; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	private static long unrolled(int[] a, int from, int to) {
+		long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for (; i <= to - 4; i += 4) {
+			s0 += a[i];
+			s1 += a[i + 1];
+			s2 += a[i + 2];
+			s3 += a[i + 3];
+		}
+		for (; i < to; i++)
+			s0 += a[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// Ranges
+
+	/**
+	 * Returns the sum of the longs from from (inclusive) to to (exclusive),
+	 * wrapping around on overflow.
+	 */
+	public static long sumRange(long from, long to, Strategy strategy) {
+		if (from >= to)
+			return 0;
+		switch (strategy) {
+		case SCALAR:
+			return scalarRange(from, to);
+		case UNROLLED:
+			return unrolledRange(from, to);
+		default:
+			return parallel(from, to, Summation::unrolledRange, Long::sum);
+		}
+	}
+
+	private static long scalarRange(long from, long to) {
+		long sum = 0;
+		for (long i = from; i < to; i++)
+			sum += i;
+		return sum;
+	}
+
+	private static long unrolledRange(long from, long to) {
+		long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		long i = from;
+		for (; to - i >= 4; i += 4) {
+			s0 += i;
+			s1 += i + 1;
+			s2 += i + 2;
+			s3 += i + 3;
+		}
+		for (; i < to; i++)
+			s0 += i;
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// double arrays
+
+	public static double sum(double[] a, Strategy strategy) {
+		return sum(a, 0, a.length, strategy);
+	}
+
+	public static double sum(double[] a, int from, int to, Strategy strategy) {
+		Objects.checkFromToIndex(from, to, a.length);
+		switch (strategy) {
+		case SCALAR:
+			return scalar(a, from, to);
+		case UNROLLED:
+			return unrolled(a, from, to);
+		default:
+			return parallel(from, to, (lo, hi) -> unrolled(a, (int) lo, (int) hi), Double::sum);
+		}
+	}
+
+	private static double scalar(double[] a, int from, int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	private static double unrolled(double[] a, int from, int to) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for (; i <= to - 4; i += 4) {
+			s0 += a[i];
+			s1 += a[i + 1];
+			s2 += a[i + 2];
+			s3 += a[i + 3];
+		}
+		for (; i < to; i++)
+			s0 += a[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	public static double sumCompensated(double[] a, Strategy strategy) {
+		return sumCompensated(a, 0, a.length, strategy);
+	}
+
+	public static double sumCompensated(double[] a, int from, int to, Strategy strategy) {
+		Objects.checkFromToIndex(from, to, a.length);
+		double[] sc = strategy == Strategy.PARALLEL
+				? parallel(from, to, (lo, hi) -> compensated(a, (int) lo, (int) hi), Summation::addCompensated)
+				: compensated(a, from, to);
+		return sc[0] + sc[1];
+	}
+
+	// Returns the sum and the accumulated rounding error
+	private static double[] compensated(double[] a, int from, int to) {
+		double sum = 0, c = 0;
+		for (int i = from; i < to; i++) {
+			double x = a[i];
+			double t = sum + x;
+			// Recover the low-order bits lost from whichever operand is smaller
+			c += Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum;
+			sum = t;
+		}
+		return new double[] { sum, c };
+	}
+
+	private static double[] addCompensated(double[] x, double[] y) {
+		double t = x[0] + y[0];
+		double c = Math.abs(x[0]) >= Math.abs(y[0]) ? (x[0] - t) + y[0] : (y[0] - t) + x[0];
+		return new double[] { t, x[1] + y[1] + c };
+	}
+
+	// Parallel driver
+
+	@FunctionalInterface
+	private interface Leaf<T> {
+		T sum(long from, long to);
+	}
+
+	private static <T> T parallel(long from, long to, Leaf<T> leaf, BinaryOperator<T> combiner) {
+		return ForkJoinPool.commonPool().invoke(new SumTask<>(from, to, leaf, combiner));
+	}
+
+	private static final class SumTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+
+		private final long from, to;
+		private final Leaf<T> leaf;
+		private final BinaryOperator<T> combiner;
+
+		SumTask(long from, long to, Leaf<T> leaf, BinaryOperator<T> combiner) {
+			this.from = from;
+			this.to = to;
+			this.leaf = leaf;
+			this.combiner = combiner;
+		}
+
+		@Override
+		protected T compute() {
+			// Unsigned, since a range of longs may be longer than Long.MAX_VALUE
+			if (Long.compareUnsigned(to - from, PARALLEL_THRESHOLD) <= 0)
+				return leaf.sum(from, to);
+			long mid = from + ((to - from) >>> 1);
+			SumTask<T> left = new SumTask<>(from, mid, leaf, combiner);
+			left.fork();
+			T right = new SumTask<>(mid, to, leaf, combiner).compute();
+			return combiner.apply(left.join(), right);
+		}
+	}
+
+	public static void main(String[] args) {
+		int numSets = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		long x = 0;
+
+		// The sum computed by Sum, for comparison with its 6.3 seconds
+		for (Strategy strategy : Strategy.values()) {
+			for (int i = 0; i < numSets; i++) {
+				long start = System.nanoTime();
+				x += sumRange(0, Integer.MAX_VALUE + 1L, strategy);
+				long end = System.nanoTime();
+				System.out.println(strategy + ": " + (end - start) / 1_000_000. + " ms.");
+			}
+		}
+
+		long[] a = new long[10_000_000];
+		for (int i = 0; i < a.length; i++)
+			a[i] = i;
+		for (Strategy strategy : Strategy.values()) {
+			for (int i = 0; i < numSets; i++) {
+				long start = System.nanoTime();
+				x += sum(a, strategy) + sumExact(a, strategy);
+				long end = System.nanoTime();
+				System.out.println(strategy + " long[], plain and exact: " + (end - start) / 1_000_000. + " ms.");
+			}
+		}
+
+		// Prevents VM from optimizing away everything.
+		if (x == 42)
+			System.out.println();
+
+		try {
+			sumExact(new long[] { Long.MAX_VALUE, 1 }, Strategy.SCALAR);
+		} catch (ArithmeticException e) {
+			System.out.println("MAX_VALUE + 1: " + e.getMessage());
+		}
+		System.out.println("MAX_VALUE + 1 - 1: " + sumExact(new long[] { Long.MAX_VALUE, 1, -1 }, Strategy.SCALAR));
+
+		double[] tenths = new double[10_000_000];
+		Arrays.fill(tenths, 0.1);
+		System.out.println("Ten million tenths: " + sum(tenths, Strategy.SCALAR) + " plain, "
+				+ sumCompensated(tenths, Strategy.SCALAR) + " compensated");
+	}
+}
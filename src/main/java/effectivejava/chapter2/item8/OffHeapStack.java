@@ -0,0 +1,189 @@
+package effectivejava.chapter2.item8;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import effectivejava.chapter2.item7.EmptyStackException;
+
+/**
+ *
+ * A stack of fixed-width records kept outside the Java heap. The item 7 Stack
+ * holds an object per element, so a deep scratch stack of short-lived frames
+ * puts pressure on the garbage collector. This stack copies each record into
+ * direct byte buffers allocated in fixed-size chunks, so heap usage stays flat
+ * however deep the stack grows, and growing never copies existing records.
+ *
+ * Off-heap memory is a resource that requires termination, so the stack
+ * follows the Room pattern: clients should close it, ideally with
+ * try-with-resources, and a cleaner releases the chunks only as a safety net.
+ * A direct buffer's native memory is normally returned only when the garbage
+ * collector finds the buffer unreachable, which may be long after the stack is
+ * done with it. So the stack frees each chunk itself as soon as it is
+ * released, on close or when pops leave the chunk unused, with the
+ * invokeCleaner method of sun.misc.Unsafe. That is an unsupported API, so it
+ * is looked up reflectively; where it is unavailable, released chunks are
+ * merely dropped, and their memory is returned when the garbage collector
+ * reclaims them, as it would be for any other direct buffer.
+ *
+ */
+// Off-heap stack of fixed-width records with a cleaner safety-net
+public class OffHeapStack implements AutoCloseable {
+	private static final Cleaner cleaner = Cleaner.create();
+	private static final int CHUNK_BYTES = 64 * 1024;
+
+	// Unsafe.invokeCleaner bound to the Unsafe instance, or null if unavailable
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup().unreflect(unsafeClass.getMethod("invokeCleaner", ByteBuffer.class))
+					.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null; // Leave the chunks to the garbage collector
+		}
+	}
+
+	// Returns the native memory of a chunk at once if possible
+	private static void free(ByteBuffer chunk) {
+		if (INVOKE_CLEANER == null)
+			return;
+		try {
+			INVOKE_CLEANER.invokeExact(chunk);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Can't free chunk", e);
+		}
+	}
+
+	// Resource that requires cleaning. Must not refer to OffHeapStack!
+	private static class State implements Runnable {
+		List<ByteBuffer> chunks = new ArrayList<>();
+
+		// Invoked by close method or cleaner
+		@Override
+		public void run() {
+			for (ByteBuffer chunk : chunks)
+				free(chunk);
+			chunks = null;
+		}
+	}
+
+	// The chunks of this stack, shared with our cleanable
+	private final State state;
+
+	// Our cleanable. Frees the chunks when the stack is eligible for gc
+	private final Cleaner.Cleanable cleanable;
+
+	private final int recordSize;
+	private final int recordsPerChunk;
+	private long size = 0;
+
+	public OffHeapStack(int recordSize) {
+		if (recordSize <= 0 || recordSize > CHUNK_BYTES)
+			throw new IllegalArgumentException("Record size: " + recordSize);
+		this.recordSize = recordSize;
+		this.recordsPerChunk = CHUNK_BYTES / recordSize;
+		state = new State();
+		cleanable = cleaner.register(this, state);
+	}
+
+	public int recordSize() {
+		return recordSize;
+	}
+
+	// Pushes the recordSize bytes starting at src[off]
+	public void push(byte[] src, int off) {
+		ByteBuffer chunk = chunkFor(size);
+		chunk.position(slot(size));
+		chunk.put(src, off, recordSize);
+		size++;
+	}
+
+	// Pushes the next recordSize bytes of src, advancing its position
+	public void push(ByteBuffer src) {
+		if (src.remaining() < recordSize)
+			throw new IllegalArgumentException("Remaining: " + src.remaining());
+		ByteBuffer chunk = chunkFor(size);
+		ByteBuffer record = src.duplicate();
+		record.limit(record.position() + recordSize);
+		chunk.position(slot(size));
+		chunk.put(record);
+		src.position(record.limit());
+		size++;
+	}
+
+	// Pops the top record into dst, starting at dst[off]
+	public void pop(byte[] dst, int off) {
+		if (size == 0)
+			throw new EmptyStackException();
+		ByteBuffer chunk = chunks().get((int) ((size - 1) / recordsPerChunk));
+		chunk.position(slot(size - 1));
+		chunk.get(dst, off, recordSize);
+		size--;
+		releaseUnusedChunks();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public void close() {
+		cleanable.clean();
+	}
+
+	private List<ByteBuffer> chunks() {
+		List<ByteBuffer> chunks = state.chunks;
+		if (chunks == null)
+			throw new IllegalStateException("Stack is closed");
+		return chunks;
+	}
+
+	// Returns the chunk holding the record at index, allocating it if needed
+	private ByteBuffer chunkFor(long index) {
+		List<ByteBuffer> chunks = chunks();
+		int chunkIndex = (int) (index / recordsPerChunk);
+		if (chunkIndex == chunks.size())
+			chunks.add(ByteBuffer.allocateDirect(recordsPerChunk * recordSize));
+		return chunks.get(chunkIndex);
+	}
+
+	private int slot(long index) {
+		return (int) (index % recordsPerChunk) * recordSize;
+	}
+
+	// Keeps one spare chunk beyond the top so that a stack oscillating around
+	// a chunk boundary doesn't allocate and release a chunk on every push/pop
+	private void releaseUnusedChunks() {
+		List<ByteBuffer> chunks = state.chunks;
+		long needed = (size + recordsPerChunk - 1) / recordsPerChunk;
+		while (chunks.size() > needed + 1)
+			free(chunks.remove(chunks.size() - 1));
+	}
+
+	public static void main(String[] args) {
+		try (OffHeapStack stack = new OffHeapStack(Long.BYTES)) {
+			ByteBuffer frame = ByteBuffer.allocate(Long.BYTES);
+			for (long i = 0; i < 100_000; i++) {
+				frame.clear();
+				frame.putLong(i).flip();
+				stack.push(frame);
+			}
+
+			byte[] top = new byte[Long.BYTES];
+			stack.pop(top, 0);
+			System.out.println(ByteBuffer.wrap(top).getLong() + ", " + stack.size() + " left");
+		}
+	}
+}
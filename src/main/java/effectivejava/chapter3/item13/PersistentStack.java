@@ -0,0 +1,92 @@
+package effectivejava.chapter3.item13;
+
+/**
+ *
+ * Stack.clone must copy the elements array, because the original and the clone
+ * would otherwise share mutable state, so every snapshot costs time and space
+ * proportional to the size of the stack.
+ *
+ * This stack keeps its elements in a chain of immutable nodes instead. Nodes
+ * are never modified once created, so a clone can safely share the whole
+ * chain with the original: clone copies only the head reference and the size,
+ * and is O(1) regardless of depth. Push allocates one node and pop merely
+ * moves the head, so both remain O(1). The clone and the original diverge as
+ * soon as either is modified, without affecting the other.
+ *
+ */
+// A cloneable stack whose clone is O(1) thanks to structural sharing
+public class PersistentStack implements Cloneable {
+	private static final class Node {
+		final Object element;
+		final Node next;
+
+		Node(Object element, Node next) {
+			this.element = element;
+			this.next = next;
+		}
+	}
+
+	private Node head; // Shared among clones; never modified
+	private int size = 0;
+
+	public void push(Object e) {
+		head = new Node(e, head);
+		size++;
+	}
+
+	public Object pop() {
+		if (size == 0)
+			throw new EmptyStackException();
+		Object result = head.element;
+		head = head.next; // Popped node is reclaimed once no clone refers to it
+		size--;
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Because the nodes are immutable, super.clone() alone is a proper copy
+	@Override
+	public PersistentStack clone() {
+		try {
+			return (PersistentStack) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError();
+		}
+	}
+
+	// Compares the cost of taking a snapshot of each kind of stack
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int numSnapshots = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+		Stack stack = new Stack();
+		PersistentStack persistentStack = new PersistentStack();
+		for (int i = 0; i < depth; i++) {
+			stack.push(i);
+			persistentStack.push(i);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < numSnapshots; i++)
+			stack = stack.clone();
+		long end = System.nanoTime();
+		System.out.println("Stack.clone: " + (end - start) / (1_000. * numSnapshots) + " us.");
+
+		start = System.nanoTime();
+		for (int i = 0; i < numSnapshots; i++)
+			persistentStack = persistentStack.clone();
+		end = System.nanoTime();
+		System.out.println("PersistentStack.clone: " + (end - start) / (1_000. * numSnapshots) + " us.");
+
+		// Prevents VM from optimizing away everything.
+		if (stack.isEmpty() || persistentStack.isEmpty())
+			System.out.println();
+	}
+}
@@ -0,0 +1,189 @@
+package effectivejava.chapter4.item18;
+
+import java.util.*;
+
+/**
+ *
+ * A drop-in replacement for HashSet that stores element references directly
+ * in an Object[] using open addressing with linear probing, the same design as
+ * IntHashSet. HashSet allocates a node of about 32 bytes (plus a HashMap.Node's
+ * share of the table) for every element; this set needs only a slot of four or
+ * eight bytes, at a load factor between 3/8 and 3/4. Like HashSet, it permits
+ * the null element.
+ *
+ */
+// Open-addressing hash set without per-entry nodes
+public class CompactHashSet<E> extends AbstractSet<E> {
+	private static final int DEFAULT_EXPECTED_SIZE = 12;
+
+	// Stands in for the null element, since null marks an empty slot
+	private static final Object NULL_ELEMENT = new Object();
+
+	private Object[] table; // Length is a power of two; null marks an empty slot
+	private int shift; // 32 - log2(table.length)
+	private int threshold; // Grow when size exceeds this
+	private int size;
+	private int modCount;
+
+	public CompactHashSet() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public CompactHashSet(int expectedSize) {
+		if (expectedSize < 0)
+			throw new IllegalArgumentException("Expected size: " + expectedSize);
+		allocate(HashSets.tableSizeFor(expectedSize));
+	}
+
+	public CompactHashSet(Collection<? extends E> c) {
+		this(c.size());
+		addAll(c);
+	}
+
+	private void allocate(int capacity) {
+		table = new Object[capacity];
+		shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+		threshold = HashSets.thresholdFor(capacity);
+	}
+
+	private static Object mask(Object o) {
+		return o == null ? NULL_ELEMENT : o;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E unmask(Object o) {
+		return o == NULL_ELEMENT ? null : (E) o;
+	}
+
+	// Fibonacci hashing guards against poorly distributed hashCodes
+	private int home(Object key) {
+		return (key.hashCode() * 0x9E3779B9) >>> shift;
+	}
+
+	// Returns the slot holding key, or the empty slot where it belongs
+	private int find(Object key) {
+		int mask = table.length - 1;
+		for (int i = home(key);; i = (i + 1) & mask) {
+			Object v = table[i];
+			if (v == null || v == key || v.equals(key))
+				return i;
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return table[find(mask(o))] != null;
+	}
+
+	@Override
+	public boolean add(E e) {
+		Object key = mask(e);
+		int i = find(key);
+		if (table[i] != null)
+			return false;
+		if (size == threshold) {
+			// Grow before inserting, so a set that can't grow refuses the
+			// element instead of using up the table's free slots
+			rehash(HashSets.grow(table.length));
+			i = find(key);
+		}
+		table[i] = key;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int i = find(mask(o));
+		if (table[i] == null)
+			return false;
+		deleteSlot(i);
+		return true;
+	}
+
+	// Backward-shift deletion, as in IntHashSet
+	private void deleteSlot(int i) {
+		int mask = table.length - 1;
+		for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+			int h = home(table[j]);
+			if (((j - h) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				i = j;
+			}
+		}
+		table[i] = null; // Eliminate obsolete reference
+		size--;
+		modCount++;
+	}
+
+	private void rehash(int newCapacity) {
+		Object[] old = table;
+		allocate(newCapacity);
+		int mask = table.length - 1;
+		for (Object key : old) {
+			if (key != null) {
+				int i = home(key);
+				while (table[i] != null)
+					i = (i + 1) & mask;
+				table[i] = key;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(table, null);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Itr();
+	}
+
+	// Walks the table backwards from an empty slot; see IntHashSet.Itr
+	private class Itr implements Iterator<E> {
+		private int pos = HashSets.emptySlot(table);
+		private int remaining = size;
+		private int lastSlot = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public E next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (remaining == 0)
+				throw new NoSuchElementException();
+			int mask = table.length - 1;
+			do {
+				pos = (pos - 1) & mask;
+			} while (table[pos] == null);
+			remaining--;
+			lastSlot = pos;
+			return unmask(table[pos]);
+		}
+
+		@Override
+		public void remove() {
+			if (lastSlot == -1)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			deleteSlot(lastSlot);
+			lastSlot = -1;
+			expectedModCount = modCount;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package effectivejava.chapter4.item18;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * The addCount of InstrumentedSet is a plain int, so concurrent adds lose
+ * updates, and it counts nothing but adds. This wrapper records adds,
+ * removes, contains hits and misses, and a latency histogram for each
+ * operation. All of the counters are LongAdders, which spread updates across
+ * striped cells, so the instrumentation doesn't become the point of contention
+ * on a machine with many cores.
+ *
+ * The wrapper is only as thread-safe as the set it wraps, so wrap a concurrent
+ * set such as ConcurrentHashMap.newKeySet(). As with InstrumentedSet, the
+ * counts are exact only if the wrapped set's bulk methods don't call back into
+ * the wrapper, which composition guarantees.
+ *
+ */
+// Thread-safe wrapper class with striped counters
+public class ConcurrentInstrumentedSet<E> extends ForwardingSet<E> {
+	private final LongAdder addCount = new LongAdder();
+	private final LongAdder removeCount = new LongAdder();
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LatencyHistogram addLatency = new LatencyHistogram();
+	private final LatencyHistogram removeLatency = new LatencyHistogram();
+	private final LatencyHistogram containsLatency = new LatencyHistogram();
+
+	public ConcurrentInstrumentedSet(Set<E> s) {
+		super(s);
+	}
+
+	@Override
+	public boolean add(E e) {
+		long start = System.nanoTime();
+		boolean result = super.add(e);
+		addLatency.record(System.nanoTime() - start);
+		addCount.increment();
+		return result;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		long start = System.nanoTime();
+		boolean result = super.addAll(c);
+		addLatency.record(System.nanoTime() - start);
+		addCount.add(c.size());
+		return result;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		long start = System.nanoTime();
+		boolean result = super.remove(o);
+		removeLatency.record(System.nanoTime() - start);
+		removeCount.increment();
+		return result;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		long start = System.nanoTime();
+		boolean result = super.contains(o);
+		containsLatency.record(System.nanoTime() - start);
+		(result ? hitCount : missCount).increment();
+		return result;
+	}
+
+	public long getAddCount() {
+		return addCount.sum();
+	}
+
+	public long getRemoveCount() {
+		return removeCount.sum();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public LatencyHistogram getAddLatency() {
+		return addLatency;
+	}
+
+	public LatencyHistogram getRemoveLatency() {
+		return removeLatency;
+	}
+
+	public LatencyHistogram getContainsLatency() {
+		return containsLatency;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		ConcurrentInstrumentedSet<Integer> s = new ConcurrentInstrumentedSet<>(ConcurrentHashMap.newKeySet());
+		ExecutorService exec = Executors.newFixedThreadPool(4);
+		for (int t = 0; t < 4; t++) {
+			exec.execute(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					int n = ThreadLocalRandom.current().nextInt(1_000);
+					s.add(n);
+					s.contains(n + 500);
+					if (n % 10 == 0)
+						s.remove(n);
+				}
+			});
+		}
+		exec.shutdown();
+		exec.awaitTermination(1, TimeUnit.MINUTES);
+
+		System.out.println("adds=" + s.getAddCount() + ", removes=" + s.getRemoveCount() + ", hits="
+				+ s.getHitCount() + ", misses=" + s.getMissCount());
+		System.out.println("add:      " + s.getAddLatency());
+		System.out.println("contains: " + s.getContainsLatency());
+	}
+}
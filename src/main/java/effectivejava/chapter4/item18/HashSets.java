@@ -0,0 +1,51 @@
+package effectivejava.chapter4.item18;
+
+// Sizing and iteration helpers shared by the open-addressing sets
+final class HashSets {
+	private HashSets() {
+	} // Noninstantiable
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// Smallest power of two table that holds expectedSize under the load factor
+	static int tableSizeFor(int expectedSize) {
+		long needed = Math.max(4, expectedSize * 4L / 3 + 1);
+		if (needed > MAX_CAPACITY)
+			return MAX_CAPACITY;
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	// Maximum load factor is 3/4. A table at maximum capacity fills up further,
+	// but the sets grow, or refuse an element, before exceeding the threshold,
+	// so it always keeps an empty slot and probes terminate.
+	static int thresholdFor(int capacity) {
+		return capacity == MAX_CAPACITY ? capacity - 2 : capacity / 4 * 3;
+	}
+
+	static int grow(int capacity) {
+		if (capacity == MAX_CAPACITY)
+			throw new IllegalStateException("Set too large");
+		return capacity * 2;
+	}
+
+	static int emptySlot(int[] table) {
+		int i = 0;
+		while (table[i] != 0)
+			i++;
+		return i;
+	}
+
+	static int emptySlot(long[] table) {
+		int i = 0;
+		while (table[i] != 0)
+			i++;
+		return i;
+	}
+
+	static int emptySlot(Object[] table) {
+		int i = 0;
+		while (table[i] != null)
+			i++;
+		return i;
+	}
+}
@@ -0,0 +1,230 @@
+package effectivejava.chapter4.item18;
+
+import java.util.*;
+
+/**
+ *
+ * A HashSet<Integer> spends roughly forty bytes per element on a hash table
+ * node and a boxed Integer. This set stores its elements directly in an int[]
+ * using open addressing with linear probing, so it costs between five and
+ * eleven bytes per element depending on load. It is a Set<Integer>, so it can
+ * be wrapped by ForwardingSet or InstrumentedSet like any other set, and the
+ * containsInt, addInt and removeInt methods let callers avoid boxing entirely.
+ *
+ * Slots holding 0 are empty, so the element 0 is tracked by a separate flag.
+ * Removal uses backward-shift deletion rather than tombstones, so probe
+ * sequences never degrade as elements come and go. Null elements are not
+ * permitted.
+ *
+ */
+// Open-addressing hash set of primitive ints
+public class IntHashSet extends AbstractSet<Integer> {
+	private static final int DEFAULT_EXPECTED_SIZE = 12;
+
+	private int[] table; // Length is a power of two; 0 marks an empty slot
+	private int shift; // 32 - log2(table.length)
+	private int threshold; // Grow when count exceeds this
+	private int count; // Number of elements in table
+	private boolean containsZero;
+	private int modCount;
+
+	public IntHashSet() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public IntHashSet(int expectedSize) {
+		if (expectedSize < 0)
+			throw new IllegalArgumentException("Expected size: " + expectedSize);
+		allocate(HashSets.tableSizeFor(expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		table = new int[capacity];
+		shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+		threshold = HashSets.thresholdFor(capacity);
+	}
+
+	// Fibonacci hashing spreads clustered keys across the whole table
+	private int home(int x) {
+		return (x * 0x9E3779B9) >>> shift;
+	}
+
+	public boolean containsInt(int x) {
+		if (x == 0)
+			return containsZero;
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			int v = table[i];
+			if (v == x)
+				return true;
+			if (v == 0)
+				return false;
+		}
+	}
+
+	public boolean addInt(int x) {
+		if (x == 0) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+			modCount++;
+			return true;
+		}
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			int v = table[i];
+			if (v == x)
+				return false;
+			if (v == 0) {
+				if (count == threshold) {
+					// Grow before inserting, so a set that can't grow refuses
+					// the element instead of using up the table's free slots
+					rehash(HashSets.grow(table.length));
+					return addInt(x);
+				}
+				table[i] = x;
+				count++;
+				modCount++;
+				return true;
+			}
+		}
+	}
+
+	public boolean removeInt(int x) {
+		if (x == 0) {
+			if (!containsZero)
+				return false;
+			containsZero = false;
+			modCount++;
+			return true;
+		}
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			int v = table[i];
+			if (v == 0)
+				return false;
+			if (v == x) {
+				deleteSlot(i);
+				return true;
+			}
+		}
+	}
+
+	// Backward-shift deletion: pull later members of the probe run into the
+	// hole whenever that doesn't move them in front of their home slot
+	private void deleteSlot(int i) {
+		int mask = table.length - 1;
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			int h = home(table[j]);
+			if (((j - h) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				i = j;
+			}
+		}
+		table[i] = 0;
+		count--;
+		modCount++;
+	}
+
+	private void rehash(int newCapacity) {
+		int[] old = table;
+		allocate(newCapacity);
+		int mask = table.length - 1;
+		for (int x : old) {
+			if (x != 0) {
+				int i = home(x);
+				while (table[i] != 0)
+					i = (i + 1) & mask;
+				table[i] = x;
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && containsInt((Integer) o);
+	}
+
+	@Override
+	public boolean add(Integer e) {
+		return addInt(e); // Auto-unboxing; throws NullPointerException for null
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Integer && removeInt((Integer) o);
+	}
+
+	@Override
+	public int size() {
+		return containsZero ? count + 1 : count;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(table, 0);
+		count = 0;
+		containsZero = false;
+		modCount++;
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new Itr();
+	}
+
+	/**
+	 * Walks the table backwards, starting just below an empty slot. Since no
+	 * probe run crosses that slot, backward-shift deletion only ever moves
+	 * elements the iterator has already returned, so Iterator.remove needs no
+	 * special handling.
+	 */
+	private class Itr implements PrimitiveIterator.OfInt {
+		private int pos = HashSets.emptySlot(table);
+		private int remaining = count; // Table elements not yet returned
+		private boolean zeroPending = containsZero;
+		private int lastSlot = -1; // -2 if zero was returned last
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return zeroPending || remaining > 0;
+		}
+
+		@Override
+		public int nextInt() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (zeroPending) {
+				zeroPending = false;
+				lastSlot = -2;
+				return 0;
+			}
+			if (remaining == 0)
+				throw new NoSuchElementException();
+			int mask = table.length - 1;
+			do {
+				pos = (pos - 1) & mask;
+			} while (table[pos] == 0);
+			remaining--;
+			lastSlot = pos;
+			return table[pos];
+		}
+
+		@Override
+		public void remove() {
+			if (lastSlot == -1)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (lastSlot == -2) {
+				containsZero = false;
+				modCount++;
+			} else {
+				deleteSlot(lastSlot);
+			}
+			lastSlot = -1;
+			expectedModCount = modCount;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package effectivejava.chapter4.item18;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * A thread-safe histogram of latencies in nanoseconds. Each bucket is a
+ * LongAdder, which stripes its count across cells under contention, so many
+ * threads can record concurrently without fighting over a single counter.
+ *
+ * Buckets are log-linear: every power of two is split into 16 equal
+ * sub-buckets, so a reported percentile is within about 6% of the true value
+ * across the whole range of a long.
+ *
+ */
+// Striped log-linear latency histogram
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final LongAdder[] counts = new LongAdder[BUCKETS];
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = new LongAdder();
+	}
+
+	public void record(long nanos) {
+		long v = Math.max(0, nanos);
+		counts[index(v)].increment();
+		total.add(v);
+		max.accumulate(v);
+	}
+
+	private static int index(long v) {
+		if (v < SUB_BUCKETS)
+			return (int) v;
+		int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(v);
+		int mantissa = (int) (v >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	// Largest value that falls in the given bucket
+	private static long upperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exp - SUB_BUCKET_BITS);
+		return (SUB_BUCKETS + index % SUB_BUCKETS) * width + width - 1;
+	}
+
+	public long count() {
+		long n = 0;
+		for (LongAdder c : counts)
+			n += c.sum();
+		return n;
+	}
+
+	public double mean() {
+		long n = count();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an upper bound on the latency below which the given fraction of
+	 * recorded values fall, for example percentile(0.99) for p99. If values are
+	 * recorded concurrently, the result reflects some of them but not others.
+	 */
+	public long percentile(double fraction) {
+		if (fraction < 0 || fraction > 1)
+			throw new IllegalArgumentException("Fraction: " + fraction);
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			n += snapshot[i] = counts[i].sum();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), max());
+		}
+		return max();
+	}
+
+	public void reset() {
+		for (LongAdder c : counts)
+			c.reset();
+		total.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d, mean=%.0f, p50=%d, p99=%d, p999=%d, max=%d ns", count(), mean(),
+				percentile(0.5), percentile(0.99), percentile(0.999), max());
+	}
+}
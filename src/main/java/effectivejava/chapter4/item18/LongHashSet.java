@@ -0,0 +1,215 @@
+package effectivejava.chapter4.item18;
+
+import java.util.*;
+
+/**
+ *
+ * The long counterpart of IntHashSet. See IntHashSet for the design.
+ *
+ */
+// Open-addressing hash set of primitive longs
+public class LongHashSet extends AbstractSet<Long> {
+	private static final int DEFAULT_EXPECTED_SIZE = 12;
+
+	private long[] table; // Length is a power of two; 0 marks an empty slot
+	private int shift; // 64 - log2(table.length)
+	private int threshold; // Grow when count exceeds this
+	private int count; // Number of elements in table
+	private boolean containsZero;
+	private int modCount;
+
+	public LongHashSet() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public LongHashSet(int expectedSize) {
+		if (expectedSize < 0)
+			throw new IllegalArgumentException("Expected size: " + expectedSize);
+		allocate(HashSets.tableSizeFor(expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		table = new long[capacity];
+		shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+		threshold = HashSets.thresholdFor(capacity);
+	}
+
+	// Fibonacci hashing spreads clustered keys across the whole table
+	private int home(long x) {
+		return (int) ((x * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	public boolean containsLong(long x) {
+		if (x == 0)
+			return containsZero;
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			long v = table[i];
+			if (v == x)
+				return true;
+			if (v == 0)
+				return false;
+		}
+	}
+
+	public boolean addLong(long x) {
+		if (x == 0) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+			modCount++;
+			return true;
+		}
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			long v = table[i];
+			if (v == x)
+				return false;
+			if (v == 0) {
+				if (count == threshold) {
+					// Grow before inserting, so a set that can't grow refuses
+					// the element instead of using up the table's free slots
+					rehash(HashSets.grow(table.length));
+					return addLong(x);
+				}
+				table[i] = x;
+				count++;
+				modCount++;
+				return true;
+			}
+		}
+	}
+
+	public boolean removeLong(long x) {
+		if (x == 0) {
+			if (!containsZero)
+				return false;
+			containsZero = false;
+			modCount++;
+			return true;
+		}
+		int mask = table.length - 1;
+		for (int i = home(x);; i = (i + 1) & mask) {
+			long v = table[i];
+			if (v == 0)
+				return false;
+			if (v == x) {
+				deleteSlot(i);
+				return true;
+			}
+		}
+	}
+
+	// Backward-shift deletion: pull later members of the probe run into the
+	// hole whenever that doesn't move them in front of their home slot
+	private void deleteSlot(int i) {
+		int mask = table.length - 1;
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			int h = home(table[j]);
+			if (((j - h) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				i = j;
+			}
+		}
+		table[i] = 0;
+		count--;
+		modCount++;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] old = table;
+		allocate(newCapacity);
+		int mask = table.length - 1;
+		for (long x : old) {
+			if (x != 0) {
+				int i = home(x);
+				while (table[i] != 0)
+					i = (i + 1) & mask;
+				table[i] = x;
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Long && containsLong((Long) o);
+	}
+
+	@Override
+	public boolean add(Long e) {
+		return addLong(e); // Auto-unboxing; throws NullPointerException for null
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Long && removeLong((Long) o);
+	}
+
+	@Override
+	public int size() {
+		return containsZero ? count + 1 : count;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(table, 0L);
+		count = 0;
+		containsZero = false;
+		modCount++;
+	}
+
+	@Override
+	public PrimitiveIterator.OfLong iterator() {
+		return new Itr();
+	}
+
+	// See IntHashSet.Itr
+	private class Itr implements PrimitiveIterator.OfLong {
+		private int pos = HashSets.emptySlot(table);
+		private int remaining = count; // Table elements not yet returned
+		private boolean zeroPending = containsZero;
+		private int lastSlot = -1; // -2 if zero was returned last
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return zeroPending || remaining > 0;
+		}
+
+		@Override
+		public long nextLong() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (zeroPending) {
+				zeroPending = false;
+				lastSlot = -2;
+				return 0L;
+			}
+			if (remaining == 0)
+				throw new NoSuchElementException();
+			int mask = table.length - 1;
+			do {
+				pos = (pos - 1) & mask;
+			} while (table[pos] == 0);
+			remaining--;
+			lastSlot = pos;
+			return table[pos];
+		}
+
+		@Override
+		public void remove() {
+			if (lastSlot == -1)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (lastSlot == -2) {
+				containsZero = false;
+				modCount++;
+			} else {
+				deleteSlot(lastSlot);
+			}
+			lastSlot = -1;
+			expectedModCount = modCount;
+		}
+	}
+}
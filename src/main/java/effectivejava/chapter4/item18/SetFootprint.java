@@ -0,0 +1,71 @@
+package effectivejava.chapter4.item18;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ *
+ * Rough memory footprint of HashSet versus the open-addressing sets, measured
+ * as the growth in used heap after a full collection. The boxed elements are
+ * allocated up front and kept reachable, so the figures for the object sets
+ * count only the set itself. Run with a heap large enough for the largest
+ * size, for example: java -Xmx32g SetFootprint 1000000 10000000 100000000
+ *
+ */
+// Memory-footprint benchmark for the open-addressing sets
+public class SetFootprint {
+	public static void main(String[] args) {
+		int[] sizes = args.length == 0 ? new int[] { 1_000_000, 10_000_000 }
+				: Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+		for (int n : sizes) {
+			Integer[] boxed = new Integer[n];
+			for (int i = 0; i < n; i++)
+				boxed[i] = i;
+
+			report("HashSet", n, () -> {
+				Set<Integer> s = new HashSet<>();
+				for (Integer e : boxed)
+					s.add(e);
+				return s;
+			});
+			report("CompactHashSet", n, () -> {
+				Set<Integer> s = new CompactHashSet<>();
+				for (Integer e : boxed)
+					s.add(e);
+				return s;
+			});
+			report("IntHashSet", n, () -> {
+				IntHashSet s = new IntHashSet();
+				for (int i = 0; i < n; i++)
+					s.addInt(i);
+				return s;
+			});
+			report("LongHashSet", n, () -> {
+				LongHashSet s = new LongHashSet();
+				for (long i = 0; i < n; i++)
+					s.addLong(i);
+				return s;
+			});
+
+			// Keeps the boxed elements reachable until all sets are measured
+			if (boxed[n - 1] == null)
+				System.out.println();
+		}
+	}
+
+	private static void report(String name, int n, Supplier<? extends Set<?>> factory) {
+		long before = usedHeap();
+		Set<?> s = factory.get();
+		long bytes = usedHeap() - before;
+		System.out.printf("%-15s %,12d elements: %,15d bytes (%.1f bytes/element)%n", name, s.size(), bytes,
+				(double) bytes / n);
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
@@ -0,0 +1,102 @@
+package effectivejava.chapter4.item20;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * The list returned by IntArrays.intArrayAsList boxes on every get and set, so
+ * Collections.shuffle and streams over it allocate an Integer per element.
+ * This view is built atop the same skeletal implementation, so it is still a
+ * List<Integer> wherever one is required, but it adds primitive accessors and
+ * bulk operations that work directly on the backing array and never box.
+ *
+ * The intStream method is backed by the array's own spliterator, which is
+ * SIZED and SUBSIZED: it splits exactly in half, so parallel streams divide
+ * the work evenly (Item 48).
+ *
+ */
+// Primitive int list view atop the skeletal implementation
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+	private final int[] a;
+
+	private IntList(int[] a) {
+		this.a = a;
+	}
+
+	// Returns a fixed-size list view of a; changes write through to the array
+	public static IntList of(int[] a) {
+		return new IntList(Objects.requireNonNull(a));
+	}
+
+	public int getInt(int i) {
+		return a[i];
+	}
+
+	public int setInt(int i, int val) {
+		int oldVal = a[i];
+		a[i] = val;
+		return oldVal;
+	}
+
+	@Override
+	public Integer get(int i) {
+		return getInt(i); // Autoboxing (Item 6)
+	}
+
+	@Override
+	public Integer set(int i, Integer val) {
+		return setInt(i, val);
+	}
+
+	@Override
+	public int size() {
+		return a.length;
+	}
+
+	public IntStream intStream() {
+		return Arrays.stream(a);
+	}
+
+	public void sort() {
+		Arrays.sort(a);
+	}
+
+	// Sorts with the fork-join pool; worthwhile only for large arrays
+	public void parallelSort() {
+		Arrays.parallelSort(a);
+	}
+
+	// Fisher-Yates, as Collections.shuffle does, but without boxing
+	public void shuffle() {
+		shuffle(ThreadLocalRandom.current());
+	}
+
+	public void shuffle(Random rnd) {
+		for (int i = a.length - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			int tmp = a[i];
+			a[i] = a[j];
+			a[j] = tmp;
+		}
+	}
+
+	// The list must be sorted; see Arrays.binarySearch(int[], int)
+	public int binarySearch(int key) {
+		return Arrays.binarySearch(a, key);
+	}
+
+	public static void main(String[] args) {
+		int[] a = new int[10];
+		for (int i = 0; i < a.length; i++)
+			a[i] = i;
+
+		IntList list = IntList.of(a);
+		list.shuffle();
+		System.out.println(list);
+		list.sort();
+		System.out.println(list.binarySearch(7));
+		System.out.println(list.intStream().parallel().map(i -> i * i).sum());
+	}
+}
@@ -0,0 +1,76 @@
+package effectivejava.chapter5.item28;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ *
+ * Walker's alias method, in the numerically stable form due to Vose. Setup
+ * takes O(n) time. After that, drawing an index with probability proportional
+ * to its weight takes O(1) time: one uniform index and one biased coin flip.
+ * Instances are immutable, so they may be shared freely among threads, each
+ * drawing from its own random number generator.
+ *
+ */
+// Alias table shared by the weighted choosers
+final class AliasTable {
+	private final double[] prob; // Probability of keeping column i
+	private final int[] alias; // Where column i's excess probability went
+
+	AliasTable(double[] weights) {
+		int n = weights.length;
+		if (n == 0)
+			throw new IllegalArgumentException("No choices");
+		double max = 0;
+		for (double w : weights) {
+			if (!(w >= 0) || Double.isInfinite(w))
+				throw new IllegalArgumentException("Bad weight: " + w);
+			max = Math.max(max, w);
+		}
+		if (max == 0)
+			throw new IllegalArgumentException("All weights are zero");
+		// Weights relative to the largest sum to at most n, so huge finite
+		// weights can't overflow to infinity
+		double sum = 0;
+		for (double w : weights)
+			sum += w / max;
+
+		prob = new double[n];
+		alias = new int[n];
+		double[] scaled = new double[n];
+		int[] small = new int[n], large = new int[n]; // Used as stacks
+		int numSmall = 0, numLarge = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] / max * n / sum;
+			if (scaled[i] < 1)
+				small[numSmall++] = i;
+			else
+				large[numLarge++] = i;
+		}
+		while (numSmall > 0 && numLarge > 0) {
+			int less = small[--numSmall], more = large[--numLarge];
+			prob[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1;
+			if (scaled[more] < 1)
+				small[numSmall++] = more;
+			else
+				large[numLarge++] = more;
+		}
+		// Whatever is left is 1 but for rounding error
+		while (numLarge > 0)
+			prob[large[--numLarge]] = 1;
+		while (numSmall > 0)
+			prob[small[--numSmall]] = 1;
+	}
+
+	int next(Random rnd) {
+		int i = rnd.nextInt(prob.length);
+		return rnd.nextDouble() < prob[i] ? i : alias[i];
+	}
+
+	int next(SplittableRandom rnd) {
+		int i = rnd.nextInt(prob.length);
+		return rnd.nextDouble() < prob[i] ? i : alias[i];
+	}
+}
@@ -0,0 +1,61 @@
+package effectivejava.chapter5.item28;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * A primitive counterpart of WeightedChooser, which chooses ints without
+ * boxing them (Item 61). Pass null weights for a uniform choice.
+ *
+ */
+// Weighted chooser of primitive ints
+public class IntChooser {
+	private final int[] choices;
+	private final AliasTable table;
+
+	public IntChooser(int[] choices, double[] weights) {
+		if (weights == null) {
+			weights = new double[choices.length];
+			Arrays.fill(weights, 1);
+		} else if (weights.length != choices.length) {
+			throw new IllegalArgumentException(choices.length + " choices, " + weights.length + " weights");
+		}
+		this.choices = choices.clone();
+		this.table = new AliasTable(weights);
+	}
+
+	public int choose() {
+		return choices[table.next(ThreadLocalRandom.current())];
+	}
+
+	public int choose(SplittableRandom rnd) {
+		return choices[table.next(rnd)];
+	}
+
+	public void chooseInto(int[] dst) {
+		Random rnd = ThreadLocalRandom.current();
+		for (int i = 0; i < dst.length; i++)
+			dst[i] = choices[table.next(rnd)];
+	}
+
+	public void chooseInto(int[] dst, SplittableRandom rnd) {
+		for (int i = 0; i < dst.length; i++)
+			dst[i] = choices[table.next(rnd)];
+	}
+
+	public int[] sample(int k) {
+		int[] result = new int[k];
+		chooseInto(result);
+		return result;
+	}
+
+	public static void main(String[] args) {
+		// Loaded die: six comes up half the time
+		IntChooser die = new IntChooser(new int[] { 1, 2, 3, 4, 5, 6 }, new double[] { 1, 1, 1, 1, 1, 5 });
+		int[] counts = new int[7];
+		for (int roll : die.sample(100_000))
+			counts[roll]++;
+		System.out.println(Arrays.toString(Arrays.copyOfRange(counts, 1, 7)));
+	}
+}
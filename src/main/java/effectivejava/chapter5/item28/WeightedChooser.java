@@ -0,0 +1,71 @@
+package effectivejava.chapter5.item28;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ *
+ * A Chooser whose choices need not be equally likely: each is chosen with
+ * probability proportional to its weight. Sampling uses the alias method, so
+ * each choice takes constant time however many choices there are.
+ *
+ * Like the list-based Chooser, this class never shares a random number
+ * generator between threads. The no-arg methods use ThreadLocalRandom; the
+ * overloads that take a SplittableRandom let each thread (or each fork of a
+ * computation) draw a reproducible sequence from its own split generator.
+ *
+ */
+// Weighted chooser built on the alias method
+public class WeightedChooser<T> {
+	private final List<T> choiceList;
+	private final AliasTable table;
+
+	public WeightedChooser(Collection<? extends T> choices, ToDoubleFunction<? super T> weight) {
+		choiceList = new ArrayList<>(choices);
+		double[] weights = new double[choiceList.size()];
+		for (int i = 0; i < weights.length; i++)
+			weights[i] = weight.applyAsDouble(choiceList.get(i));
+		table = new AliasTable(weights);
+	}
+
+	public T choose() {
+		return choiceList.get(table.next(ThreadLocalRandom.current()));
+	}
+
+	public T choose(SplittableRandom rnd) {
+		return choiceList.get(table.next(rnd));
+	}
+
+	// Fills dst with independent choices
+	public void chooseInto(T[] dst) {
+		Random rnd = ThreadLocalRandom.current();
+		for (int i = 0; i < dst.length; i++)
+			dst[i] = choiceList.get(table.next(rnd));
+	}
+
+	public void chooseInto(T[] dst, SplittableRandom rnd) {
+		for (int i = 0; i < dst.length; i++)
+			dst[i] = choiceList.get(table.next(rnd));
+	}
+
+	// Returns k independent choices (with replacement)
+	public List<T> sample(int k) {
+		Random rnd = ThreadLocalRandom.current();
+		List<T> result = new ArrayList<>(k);
+		for (int i = 0; i < k; i++)
+			result.add(choiceList.get(table.next(rnd)));
+		return result;
+	}
+
+	public static void main(String[] args) {
+		List<String> fruits = List.of("apple", "banana", "cherry");
+		Map<String, Integer> weights = Map.of("apple", 6, "banana", 3, "cherry", 1);
+		WeightedChooser<String> chooser = new WeightedChooser<>(fruits, weights::get);
+
+		Map<String, Integer> counts = new TreeMap<>();
+		for (String s : chooser.sample(100_000))
+			counts.merge(s, 1, Integer::sum);
+		System.out.println(counts);
+	}
+}
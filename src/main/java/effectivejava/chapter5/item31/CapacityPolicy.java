@@ -0,0 +1,86 @@
+package effectivejava.chapter5.item31;
+
+/**
+ *
+ * Decides how an array-backed stack resizes its backing array. Every stack in
+ * this project doubles its array when full and never shrinks it, so a stack
+ * that briefly spikes to millions of elements pins that array for as long as
+ * the stack lives. This is the capacity counterpart of the obsolete references
+ * in Item 7: memory the program will never use again but can't reclaim.
+ *
+ * Growth and shrinking are separate decisions: pick a growth policy with one
+ * of the static factories, and add shrinking with withHysteresisShrink.
+ *
+ */
+// Pluggable growth and shrink policy for the array-backed stacks
+@FunctionalInterface
+public interface CapacityPolicy {
+	// Some VMs reserve header words in an array (same limit as ArrayList)
+	int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Returns the new capacity for an array of the given capacity that must
+	 * hold at least minCapacity elements. The stack never allocates fewer than
+	 * minCapacity slots, whatever this method returns.
+	 */
+	int grow(int capacity, int minCapacity);
+
+	/**
+	 * Returns the new capacity for an array of the given capacity that now
+	 * holds size elements, or capacity to leave the array alone. The stack
+	 * calls this method again with each new capacity until it returns the
+	 * capacity unchanged, and then resizes once. By default, arrays never
+	 * shrink.
+	 */
+	default int shrink(int capacity, int size) {
+		return capacity;
+	}
+
+	// The historical behavior of the stacks: 2 * capacity + 1
+	static CapacityPolicy doubling() {
+		return (capacity, minCapacity) -> clamp(2L * capacity + 1, minCapacity);
+	}
+
+	// Grows by half as much again, trading more frequent copies for less slack
+	static CapacityPolicy oneAndHalf() {
+		return (capacity, minCapacity) -> clamp(capacity + (capacity >> 1) + 1L, minCapacity);
+	}
+
+	// Grows by whole chunks, so slack is bounded by chunkSize elements
+	static CapacityPolicy chunked(int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size: " + chunkSize);
+		return (capacity, minCapacity) -> clamp((minCapacity + chunkSize - 1L) / chunkSize * chunkSize,
+				minCapacity);
+	}
+
+	/**
+	 * Returns a policy that grows like this one, and halves the array whenever
+	 * it drops to a quarter full, but never below floor. Shrinking at a quarter
+	 * rather than at half leaves a gap between the grow and shrink thresholds,
+	 * so a stack oscillating around a threshold doesn't resize on every
+	 * push/pop, and both remain amortized O(1).
+	 */
+	default CapacityPolicy withHysteresisShrink(int floor) {
+		if (floor < 0)
+			throw new IllegalArgumentException("Floor: " + floor);
+		CapacityPolicy growth = this;
+		return new CapacityPolicy() {
+			@Override
+			public int grow(int capacity, int minCapacity) {
+				return growth.grow(capacity, minCapacity);
+			}
+
+			@Override
+			public int shrink(int capacity, int size) {
+				if (capacity <= floor || size > capacity / 4)
+					return capacity;
+				return Math.max(capacity / 2, floor);
+			}
+		};
+	}
+
+	private static int clamp(long capacity, int minCapacity) {
+		return (int) Math.max(minCapacity, Math.min(capacity, MAX_ARRAY_SIZE));
+	}
+}
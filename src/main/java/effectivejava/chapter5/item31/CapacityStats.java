@@ -0,0 +1,70 @@
+package effectivejava.chapter5.item31;
+
+/**
+ *
+ * Resize counters kept by an array-backed stack, for tuning its
+ * CapacityPolicy. Like the stacks that own them, instances are not
+ * thread-safe.
+ *
+ */
+public class CapacityStats {
+	private final int elementBytes;
+	private int capacity;
+	private int peakCapacity;
+	private long grows;
+	private long shrinks;
+	private long elementsCopied;
+
+	CapacityStats(int elementBytes, int initialCapacity) {
+		this.elementBytes = elementBytes;
+		this.capacity = initialCapacity;
+		this.peakCapacity = initialCapacity;
+	}
+
+	// Called by the stack each time it replaces its backing array
+	void recordResize(int copied, int newCapacity) {
+		if (newCapacity > capacity)
+			grows++;
+		else
+			shrinks++;
+		capacity = newCapacity;
+		peakCapacity = Math.max(peakCapacity, newCapacity);
+		elementsCopied += copied;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int peakCapacity() {
+		return peakCapacity;
+	}
+
+	public long resizes() {
+		return grows + shrinks;
+	}
+
+	public long grows() {
+		return grows;
+	}
+
+	public long shrinks() {
+		return shrinks;
+	}
+
+	public long elementsCopied() {
+		return elementsCopied;
+	}
+
+	// For object stacks this assumes 8-byte references, so it is an upper
+	// bound when the VM uses compressed references
+	public long bytesCopied() {
+		return elementsCopied * elementBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("capacity=%d, peak=%d, grows=%d, shrinks=%d, bytesCopied=%d", capacity, peakCapacity,
+				grows, shrinks, bytesCopied());
+	}
+}
@@ -0,0 +1,132 @@
+package effectivejava.chapter5.item31;
+
+import java.util.*;
+
+/**
+ *
+ * You can't create a Stack<int>, so a Stack<Integer> boxes every element it
+ * holds. Where a stack of primitives sits on a hot path, the boxing dominates
+ * allocation, and a primitive-specialized stack backed by an int[] avoids it
+ * entirely. This is the approach taken by IntStream, LongStream and
+ * DoubleStream in java.util.stream (Item 61: Prefer primitive types to boxed
+ * primitives).
+ *
+ * The push, pop, pushAll and popAll methods keep the contract of the generic
+ * Stack, including the PECS wildcards on the boxed bulk methods. The array
+ * based pushAll and popInto methods let callers move elements in bulk without
+ * ever autoboxing.
+ *
+ */
+// Primitive-specialized stack backed by int[]
+public class IntStack {
+	private int[] elements;
+	private int size = 0;
+	private static final int DEFAULT_INITIAL_CAPACITY = 16;
+	private final CapacityPolicy policy;
+	private final CapacityStats stats;
+
+	public IntStack() {
+		this(CapacityPolicy.doubling());
+	}
+
+	public IntStack(CapacityPolicy policy) {
+		this.policy = Objects.requireNonNull(policy);
+		elements = new int[DEFAULT_INITIAL_CAPACITY];
+		stats = new CapacityStats(Integer.BYTES, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public void push(int e) {
+		ensureCapacity(size + 1);
+		elements[size++] = e;
+	}
+
+	public int pop() {
+		if (size == 0)
+			throw new EmptyStackException();
+		int result = elements[--size]; // No obsolete reference to eliminate
+		trimCapacity();
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public CapacityStats capacityStats() {
+		return stats;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (elements.length < minCapacity)
+			resize(Math.max(policy.grow(elements.length, minCapacity), minCapacity));
+	}
+
+	private void trimCapacity() {
+		// Apply the policy until it is satisfied, so a bulk pop that empties a
+		// large stack gives back all the surplus at once, in a single copy
+		int capacity = elements.length;
+		for (int c; (c = Math.max(policy.shrink(capacity, size), size)) < capacity; )
+			capacity = c;
+		if (capacity < elements.length)
+			resize(capacity);
+	}
+
+	private void resize(int newCapacity) {
+		elements = Arrays.copyOf(elements, newCapacity);
+		stats.recordResize(size, newCapacity);
+	}
+
+	// Wildcard type for parameter that serves as an Integer producer
+	public void pushAll(Iterable<? extends Integer> src) {
+		for (int e : src)
+			push(e);
+	}
+
+	// Pushes src[off], ..., src[off + len - 1] in order, without boxing
+	public void pushAll(int[] src, int off, int len) {
+		Objects.checkFromIndexSize(off, len, src.length);
+		if (len > CapacityPolicy.MAX_ARRAY_SIZE - size) // size + len would overflow
+			throw new OutOfMemoryError("Stack would exceed " + CapacityPolicy.MAX_ARRAY_SIZE + " elements");
+		ensureCapacity(size + len);
+		System.arraycopy(src, off, elements, size, len);
+		size += len;
+	}
+
+	// Wildcard type for parameter that serves as an Integer consumer
+	public void popAll(Collection<? super Integer> dst) {
+		while (!isEmpty())
+			dst.add(pop());
+	}
+
+	/**
+	 * Pops up to dst.length elements into dst, in the order pop would return
+	 * them, and returns the number of elements popped.
+	 */
+	public int popInto(int[] dst) {
+		int n = Math.min(dst.length, size);
+		for (int i = 0; i < n; i++)
+			dst[i] = elements[--size];
+		trimCapacity();
+		return n;
+	}
+
+	// Little program to exercise our primitive stack
+	public static void main(String[] args) {
+		IntStack stack = new IntStack();
+		int[] digits = { 3, 1, 4, 1, 5, 9, 2, 6 };
+		stack.pushAll(digits, 0, digits.length);
+		stack.pushAll(Arrays.asList(5, 3, 5));
+
+		int[] top = new int[4];
+		int n = stack.popInto(top);
+		System.out.println(Arrays.toString(Arrays.copyOf(top, n)));
+
+		Collection<Number> rest = new ArrayList<>();
+		stack.popAll(rest);
+		System.out.println(rest);
+	}
+}
@@ -0,0 +1,106 @@
+package effectivejava.chapter5.item31;
+
+import java.util.*;
+
+/**
+ *
+ * The long counterpart of IntStack. See IntStack for the rationale.
+ *
+ */
+// Primitive-specialized stack backed by long[]
+public class LongStack {
+	private long[] elements;
+	private int size = 0;
+	private static final int DEFAULT_INITIAL_CAPACITY = 16;
+	private final CapacityPolicy policy;
+	private final CapacityStats stats;
+
+	public LongStack() {
+		this(CapacityPolicy.doubling());
+	}
+
+	public LongStack(CapacityPolicy policy) {
+		this.policy = Objects.requireNonNull(policy);
+		elements = new long[DEFAULT_INITIAL_CAPACITY];
+		stats = new CapacityStats(Long.BYTES, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public void push(long e) {
+		ensureCapacity(size + 1);
+		elements[size++] = e;
+	}
+
+	public long pop() {
+		if (size == 0)
+			throw new EmptyStackException();
+		long result = elements[--size]; // No obsolete reference to eliminate
+		trimCapacity();
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public CapacityStats capacityStats() {
+		return stats;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (elements.length < minCapacity)
+			resize(Math.max(policy.grow(elements.length, minCapacity), minCapacity));
+	}
+
+	private void trimCapacity() {
+		// Apply the policy until it is satisfied, so a bulk pop that empties a
+		// large stack gives back all the surplus at once, in a single copy
+		int capacity = elements.length;
+		for (int c; (c = Math.max(policy.shrink(capacity, size), size)) < capacity; )
+			capacity = c;
+		if (capacity < elements.length)
+			resize(capacity);
+	}
+
+	private void resize(int newCapacity) {
+		elements = Arrays.copyOf(elements, newCapacity);
+		stats.recordResize(size, newCapacity);
+	}
+
+	// Wildcard type for parameter that serves as a Long producer
+	public void pushAll(Iterable<? extends Long> src) {
+		for (long e : src)
+			push(e);
+	}
+
+	// Pushes src[off], ..., src[off + len - 1] in order, without boxing
+	public void pushAll(long[] src, int off, int len) {
+		Objects.checkFromIndexSize(off, len, src.length);
+		if (len > CapacityPolicy.MAX_ARRAY_SIZE - size) // size + len would overflow
+			throw new OutOfMemoryError("Stack would exceed " + CapacityPolicy.MAX_ARRAY_SIZE + " elements");
+		ensureCapacity(size + len);
+		System.arraycopy(src, off, elements, size, len);
+		size += len;
+	}
+
+	// Wildcard type for parameter that serves as a Long consumer
+	public void popAll(Collection<? super Long> dst) {
+		while (!isEmpty())
+			dst.add(pop());
+	}
+
+	/**
+	 * Pops up to dst.length elements into dst, in the order pop would return
+	 * them, and returns the number of elements popped.
+	 */
+	public int popInto(long[] dst) {
+		int n = Math.min(dst.length, size);
+		for (int i = 0; i < n; i++)
+			dst[i] = elements[--size];
+		trimCapacity();
+		return n;
+	}
+}
@@ -27,13 +27,21 @@ public class Stack<E> {
 	private E[] elements;
 	private int size = 0;
 	private static final int DEFAULT_INITIAL_CAPACITY = 16;
+	private final CapacityPolicy policy;
+	private final CapacityStats stats;
+
+	public Stack() {
+		this(CapacityPolicy.doubling());
+	}
 
 	// The elements array will contain only E instances from push(E).
 	// This is sufficient to ensure type safety, but the runtime
 	// type of the array won't be E[]; it will always be Object[]!
 	@SuppressWarnings("unchecked")
-	public Stack() {
+	public Stack(CapacityPolicy policy) {
+		this.policy = Objects.requireNonNull(policy);
 		elements = (E[]) new Object[DEFAULT_INITIAL_CAPACITY];
+		stats = new CapacityStats(Long.BYTES, DEFAULT_INITIAL_CAPACITY);
 	}
 
 	public void push(E e) {
@@ -46,6 +54,7 @@ public class Stack<E> {
 			throw new EmptyStackException();
 		E result = elements[--size];
 		elements[size] = null; // Eliminate obsolete reference
+		trimCapacity();
 		return result;
 	}
 
@@ -53,9 +62,29 @@ public class Stack<E> {
 		return size == 0;
 	}
 
+	public CapacityStats capacityStats() {
+		return stats;
+	}
+
 	private void ensureCapacity() {
 		if (elements.length == size)
-			elements = Arrays.copyOf(elements, 2 * size + 1);
+			resize(Math.max(policy.grow(elements.length, size + 1), size + 1));
+	}
+
+	// Release capacity the policy considers surplus (Item 7 for arrays)
+	private void trimCapacity() {
+		// Apply the policy until it is satisfied, so a bulk pop that empties a
+		// large stack gives back all the surplus at once, in a single copy
+		int capacity = elements.length;
+		for (int c; (c = Math.max(policy.shrink(capacity, size), size)) < capacity; )
+			capacity = c;
+		if (capacity < elements.length)
+			resize(capacity);
+	}
+
+	private void resize(int newCapacity) {
+		elements = Arrays.copyOf(elements, newCapacity);
+		stats.recordResize(size, newCapacity);
 	}
 
 //    // pushAll staticfactory without wildcard type - deficient!
@@ -0,0 +1,38 @@
+package effectivejava.chapter5.item33;
+
+/**
+ *
+ * The custom key type suggested for a typesafe heterogeneous container that
+ * represents a database row. A Column<T> plays the role of the type token
+ * Class<T>, but any number of columns may share a value type. Columns are
+ * created by the Columns schema they belong to, which assigns each a dense
+ * index, so a DatabaseRow can find its value with an array load.
+ *
+ */
+// Custom key type for DatabaseRow
+public final class Column<T> {
+	final Columns schema;
+	private final String name;
+	private final Class<T> type;
+	final int index;
+
+	Column(Columns schema, String name, Class<T> type, int index) {
+		this.schema = schema;
+		this.name = name;
+		this.type = type;
+		this.index = index;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public Class<T> type() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return name + " : " + type.getSimpleName();
+	}
+}
@@ -0,0 +1,31 @@
+package effectivejava.chapter5.item33;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * The schema of a table: the factory for its columns and its rows. Each
+ * schema numbers its own columns from zero, so a DatabaseRow never holds more
+ * slots than its schema has columns, however many other columns the program
+ * creates. A row accepts only the columns of its own schema.
+ *
+ */
+// Column factory that owns the column indices of one table
+public final class Columns {
+	private final AtomicInteger nextIndex = new AtomicInteger();
+
+	public <T> Column<T> column(String name, Class<T> type) {
+		return new Column<>(this, Objects.requireNonNull(name), Objects.requireNonNull(type),
+				nextIndex.getAndIncrement());
+	}
+
+	// The number of columns created so far
+	public int size() {
+		return nextIndex.get();
+	}
+
+	public DatabaseRow newRow() {
+		return new DatabaseRow(this);
+	}
+}
@@ -0,0 +1,59 @@
+package effectivejava.chapter5.item33;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Favorites is backed by a HashMap, so every lookup is a hash probe followed by
+ * a dynamic cast, and the class is not thread-safe. This variant assigns each
+ * type token a dense index the first time it is used, via a ClassValue, which
+ * caches a value on the Class object itself. Values are stored in an atomic
+ * array at that index, so a lookup is an array load. Each container has its
+ * own ClassValue and numbers types from zero, so its array grows only with
+ * the number of types it is used with, not with every type used by any
+ * container in the program.
+ *
+ * Runtime type safety is still enforced, by the dynamic cast in putFavorite.
+ * Since only instances of T can be stored at the index for Class<T>, the
+ * unchecked cast in getFavorite is safe.
+ *
+ */
+// Concurrent typesafe heterogeneous container indexed by ClassValue
+public class ConcurrentFavorites {
+	// Static, so the cached indices hold no reference to the container
+	private static final class TypeIndex extends ClassValue<Integer> {
+		private final AtomicInteger nextIndex = new AtomicInteger();
+
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return nextIndex.getAndIncrement();
+		}
+	}
+
+	private final TypeIndex index = new TypeIndex();
+	private final DenseSlots favorites = new DenseSlots();
+
+	public <T> void putFavorite(Class<T> type, T instance) {
+		favorites.set(index.get(Objects.requireNonNull(type)), type.cast(instance));
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getFavorite(Class<T> type) {
+		return (T) favorites.get(index.get(type));
+	}
+
+	public static void main(String[] args) {
+		ConcurrentFavorites f = new ConcurrentFavorites();
+
+		f.putFavorite(String.class, "Java");
+		f.putFavorite(Integer.class, 0xcafebabe);
+		f.putFavorite(Class.class, ConcurrentFavorites.class);
+
+		String favoriteString = f.getFavorite(String.class);
+		int favoriteInteger = f.getFavorite(Integer.class);
+		Class<?> favoriteClass = f.getFavorite(Class.class);
+
+		System.out.printf("%s %x %s%n", favoriteString, favoriteInteger, favoriteClass.getName());
+	}
+}
@@ -0,0 +1,53 @@
+package effectivejava.chapter5.item33;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ *
+ * A typesafe heterogeneous container whose keys are Columns rather than Class
+ * objects. Like ConcurrentFavorites, it is thread-safe and looks values up by
+ * each key's dense index. Indices are only unique within a schema, so a row
+ * rejects columns from any schema but its own.
+ *
+ */
+// Database row keyed by Column<T>
+public class DatabaseRow {
+	private final Columns schema;
+	private final DenseSlots values = new DenseSlots();
+
+	public DatabaseRow(Columns schema) {
+		this.schema = Objects.requireNonNull(schema);
+	}
+
+	public <T> void put(Column<T> column, T value) {
+		values.set(checkSchema(column), column.type().cast(value));
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(Column<T> column) {
+		return (T) values.get(checkSchema(column));
+	}
+
+	private int checkSchema(Column<?> column) {
+		if (column.schema != schema)
+			throw new IllegalArgumentException("Column of another schema: " + column);
+		return column.index;
+	}
+
+	public static void main(String[] args) {
+		Columns people = new Columns();
+		Column<String> firstName = people.column("first_name", String.class);
+		Column<String> lastName = people.column("last_name", String.class);
+		Column<LocalDate> born = people.column("born", LocalDate.class);
+
+		DatabaseRow row = people.newRow();
+		row.put(firstName, "Jane");
+		row.put(lastName, "Doe");
+		row.put(born, LocalDate.of(1990, 1, 1));
+
+		String first = row.get(firstName);
+		LocalDate date = row.get(born);
+		System.out.println(first + " " + row.get(lastName) + ", " + date.getYear());
+	}
+}
@@ -0,0 +1,57 @@
+package effectivejava.chapter5.item33;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *
+ * A thread-safe, growable array of values indexed by small dense integers.
+ * Values live in fixed-size chunks that are created on demand and never
+ * copied, so a reader or writer that holds a chunk can never miss a write to
+ * it. Only creating a chunk, and growing the table of chunks, takes a lock;
+ * reads and writes of existing slots are single atomic accesses.
+ *
+ */
+// Chunked atomic storage shared by ConcurrentFavorites and DatabaseRow
+final class DenseSlots {
+	private static final int CHUNK_BITS = 5;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private volatile AtomicReferenceArray<AtomicReferenceArray<Object>> chunks = new AtomicReferenceArray<>(1);
+
+	Object get(int index) {
+		AtomicReferenceArray<Object> chunk = existingChunk(index);
+		return chunk == null ? null : chunk.get(index & (CHUNK_SIZE - 1));
+	}
+
+	void set(int index, Object value) {
+		AtomicReferenceArray<Object> chunk = existingChunk(index);
+		if (chunk == null)
+			chunk = createChunk(index);
+		chunk.set(index & (CHUNK_SIZE - 1), value);
+	}
+
+	private AtomicReferenceArray<Object> existingChunk(int index) {
+		AtomicReferenceArray<AtomicReferenceArray<Object>> table = chunks;
+		int c = index >>> CHUNK_BITS;
+		return c < table.length() ? table.get(c) : null;
+	}
+
+	private synchronized AtomicReferenceArray<Object> createChunk(int index) {
+		int c = index >>> CHUNK_BITS;
+		AtomicReferenceArray<AtomicReferenceArray<Object>> table = chunks;
+		if (c >= table.length()) {
+			// Copies chunk references only; the chunks themselves are shared
+			AtomicReferenceArray<AtomicReferenceArray<Object>> bigger = new AtomicReferenceArray<>(
+					Math.max(c + 1, 2 * table.length()));
+			for (int i = 0; i < table.length(); i++)
+				bigger.set(i, table.get(i));
+			chunks = table = bigger;
+		}
+		AtomicReferenceArray<Object> chunk = table.get(c);
+		if (chunk == null) {
+			chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+			table.set(c, chunk);
+		}
+		return chunk;
+	}
+}
@@ -0,0 +1,332 @@
+package effectivejava.chapter7.item45.anagrams;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Every Anagrams program reads and groups the whole dictionary each time it
+ * runs. This index does the grouping once, with MappedAnagrams, and writes
+ * the result to a file that later runs memory-map in place of the
+ * dictionary. Opening it reads only a header, so it takes milliseconds
+ * however large the dictionary; the operating system pages in just the parts
+ * that queries touch.
+ *
+ * The file holds, after the header:
+ *
+ * the signature of each group, two longs apiece, in increasing order;
+ * for each group, the index of its first word, followed by the word count;
+ * the groups again, ordered by decreasing size;
+ * for each word, the offset of its UTF-8 bytes in the blob, followed by the
+ * blob size; and
+ * the blob, holding the words of each group in turn.
+ *
+ * anagramsOf finds a group by binary search on its signature, and
+ * groupsOfSizeAtLeast reads a prefix of the groups ordered by size. Words
+ * that AnagramSignature cannot pack are given a 127-bit hash of their
+ * alphabetized letters as a signature, with the top bit set to keep it apart
+ * from packed signatures; since two groups could in principle share a hash,
+ * a lookup by hash confirms the group by comparing letters. The file is a
+ * single mapping, so it is limited to 2 GB.
+ */
+// Persistent memory-mapped anagram index
+public class AnagramIndex {
+    private static final int MAGIC = 0x414E4147; // "ANAG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer buf;
+    private final int groups;
+    private final int words;
+    private final int signatures, groupStarts, bySize, wordOffsets, blob;
+
+    private AnagramIndex(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+            throw new IOException("Not an anagram index, or an unsupported version");
+        groups = buf.getInt(8);
+        words = buf.getInt(12);
+        signatures = HEADER_BYTES;
+        groupStarts = signatures + 16 * groups;
+        bySize = groupStarts + 4 * (groups + 1);
+        wordOffsets = bySize + 4 * groups;
+        blob = wordOffsets + 4 * (words + 1);
+        if (blob + buf.getInt(wordOffsets + 4 * words) != buf.limit())
+            throw new IOException("Truncated anagram index");
+    }
+
+    public static AnagramIndex open(Path index) throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Anagram index too large: " + channel.size());
+            return new AnagramIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int groupCount() {
+        return groups;
+    }
+
+    public int wordCount() {
+        return words;
+    }
+
+    /**
+     * Returns the words in the dictionary that are anagrams of word, including
+     * word itself if it is in the dictionary.
+     */
+    public List<String> anagramsOf(String word) {
+        long[] sig = signature(word);
+        String letters = null;
+        for (int g = lowerBound(sig[0], sig[1]); g < groups && first(g) == sig[0] && second(g) == sig[1]; g++) {
+            if (sig[0] >= 0)
+                return group(g); // Packed signatures are exact
+            if (letters == null)
+                letters = AnagramSignature.alphabetize(word);
+            if (AnagramSignature.alphabetize(word(groupStart(g))).equals(letters))
+                return group(g);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the anagram groups with at least n words, largest first.
+     */
+    public Stream<List<String>> groupsOfSizeAtLeast(int n) {
+        // The groups are ordered by decreasing size, so find the first too small
+        int lo = 0, hi = groups;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (groupSize(buf.getInt(bySize + 4 * mid)) >= n)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return IntStream.range(0, lo).mapToObj(i -> group(buf.getInt(bySize + 4 * i)));
+    }
+
+    private long first(int g) {
+        return buf.getLong(signatures + 16 * g);
+    }
+
+    private long second(int g) {
+        return buf.getLong(signatures + 16 * g + 8);
+    }
+
+    // The first group whose signature is not less than (first, second)
+    private int lowerBound(long first, long second) {
+        int lo = 0, hi = groups;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Long.compare(first(mid), first);
+            if (c < 0 || (c == 0 && second(mid) < second))
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int groupStart(int g) {
+        return buf.getInt(groupStarts + 4 * g);
+    }
+
+    private int groupSize(int g) {
+        return groupStart(g + 1) - groupStart(g);
+    }
+
+    private List<String> group(int g) {
+        List<String> result = new ArrayList<>(groupSize(g));
+        for (int w = groupStart(g); w < groupStart(g + 1); w++)
+            result.add(word(w));
+        return result;
+    }
+
+    private String word(int w) {
+        int from = buf.getInt(wordOffsets + 4 * w), to = buf.getInt(wordOffsets + 4 * (w + 1));
+        byte[] bytes = new byte[to - from];
+        buf.duplicate().position(blob + from).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // The packed signature of word, or a hash of its letters with the top bit set
+    private static long[] signature(String word) {
+        long[] sig = new long[2];
+        if (!AnagramSignature.pack(word, sig)) {
+            String letters = AnagramSignature.alphabetize(word);
+            long h1 = 0xCBF2_9CE4_8422_2325L, h2 = 0x8422_2325_CBF2_9CE4L;
+            for (int i = 0; i < letters.length(); i++) {
+                h1 = (h1 ^ letters.charAt(i)) * 0x0000_0100_0000_01B3L;
+                h2 = (h2 + letters.charAt(i)) * 0x9E37_79B9_7F4A_7C15L;
+                h2 ^= h2 >>> 29;
+            }
+            sig[0] = h1 | Long.MIN_VALUE;
+            sig[1] = h2;
+        }
+        return sig;
+    }
+
+    /**
+     * Groups the words of dictionary, one per line, and writes an index of
+     * the groups to index, replacing any existing file. Words are not decoded
+     * into Strings: the index is written from the positions that
+     * MappedAnagrams records, and each word's bytes are copied straight from
+     * the mapped dictionary, so memory use grows with the number of words but
+     * not with their length.
+     */
+    public static void write(Path dictionary, Path index) throws IOException {
+        MappedAnagrams.Groups groups = MappedAnagrams.group(dictionary);
+        // The packed groups, followed by the others
+        int n = groups.size() + groups.unpacked().size();
+        long[] firsts = new long[n], seconds = new long[n];
+        int[] sizes = new int[n];
+        long words = 0;
+        for (int g = 0; g < n; g++) {
+            if (g < groups.size()) {
+                firsts[g] = groups.first(g);
+                seconds[g] = groups.second(g);
+                sizes[g] = groups.groupSize(g);
+            } else {
+                List<String> group = groups.unpacked().get(g - groups.size());
+                long[] sig = signature(group.get(0));
+                firsts[g] = sig[0];
+                seconds[g] = sig[1];
+                sizes[g] = group.size();
+            }
+            words += sizes[g];
+        }
+        long tablesSize = HEADER_BYTES + 16L * n + 4L * (n + 1) + 4L * n + 4L * (words + 1);
+        if (tablesSize > Integer.MAX_VALUE)
+            throw new IOException("Anagram index would exceed 2 GB");
+        int[] bySignature = sortBySignature(firsts, seconds);
+        int[] bySize = sortBySize(bySignature, sizes);
+
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt((int) words);
+            for (int g : bySignature) {
+                out.writeLong(firsts[g]);
+                out.writeLong(seconds[g]);
+            }
+            int start = 0;
+            for (int g : bySignature) {
+                out.writeInt(start);
+                start += sizes[g];
+            }
+            out.writeInt(start);
+            for (int i : bySize)
+                out.writeInt(i);
+
+            long[] blobSize = new long[1];
+            for (int g : bySignature)
+                forEachWord(groups, g, (buf, from, to) -> {
+                    out.writeInt((int) blobSize[0]);
+                    blobSize[0] += to - from;
+                });
+            if (tablesSize + blobSize[0] > Integer.MAX_VALUE)
+                throw new IOException("Anagram index would exceed 2 GB: " + (tablesSize + blobSize[0]));
+            out.writeInt((int) blobSize[0]);
+
+            byte[] chunk = new byte[8192];
+            for (int g : bySignature)
+                forEachWord(groups, g, (buf, from, to) -> {
+                    ByteBuffer word = buf.duplicate();
+                    word.position(from);
+                    for (int len; (len = Math.min(chunk.length, to - word.position())) > 0; ) {
+                        word.get(chunk, 0, len);
+                        out.write(chunk, 0, len);
+                    }
+                });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void forEachWord(MappedAnagrams.Groups groups, int g, MappedAnagrams.WordVisitor visitor)
+            throws IOException {
+        if (g < groups.size()) {
+            groups.forEachWord(g, visitor);
+            return;
+        }
+        for (String word : groups.unpacked().get(g - groups.size())) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            visitor.visit(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+    }
+
+    // The groups in increasing order of signature, by a bottom-up merge sort
+    // of their numbers, so that no group is boxed
+    private static int[] sortBySignature(long[] firsts, long[] seconds) {
+        int n = firsts.length;
+        int[] a = new int[n], merged = new int[n];
+        for (int g = 0; g < n; g++)
+            a[g] = g;
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(n, mid + width);
+                for (int i = lo, j = mid, k = lo; k < hi; k++) {
+                    boolean takeRight = j < hi && (i == mid || firsts[a[j]] < firsts[a[i]]
+                            || (firsts[a[j]] == firsts[a[i]] && seconds[a[j]] < seconds[a[i]]));
+                    merged[k] = takeRight ? a[j++] : a[i++];
+                }
+                System.arraycopy(merged, lo, a, lo, hi - lo);
+            }
+        }
+        return a;
+    }
+
+    // Positions in bySignature, in decreasing order of group size, by a
+    // counting sort that keeps groups of equal size in signature order
+    private static int[] sortBySize(int[] bySignature, int[] sizes) {
+        int max = 0;
+        for (int size : sizes)
+            max = Math.max(max, size);
+        int[] next = new int[max + 2]; // Indexed by max - size
+        for (int size : sizes)
+            next[max - size + 1]++;
+        for (int i = 1; i < next.length; i++)
+            next[i] += next[i - 1];
+        int[] result = new int[bySignature.length];
+        for (int i = 0; i < bySignature.length; i++)
+            result[next[max - sizes[bySignature[i]]]++] = i;
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dictionary = Paths.get(args[0]);
+        Path index = Paths.get(args[1]);
+        int minGroupSize = Integer.parseInt(args[2]);
+
+        if (!Files.exists(index))
+            write(dictionary, index);
+
+        long start = System.nanoTime();
+        AnagramIndex anagrams = open(index);
+        long end = System.nanoTime();
+        System.out.println("Opened " + anagrams.groupCount() + " groups in " + (end - start) / 1_000_000. + " ms.");
+
+        anagrams.groupsOfSizeAtLeast(minGroupSize).forEach(g -> System.out.println(g.size() + ": " + g));
+        for (int i = 3; i < args.length; i++) {
+            start = System.nanoTime();
+            List<String> group = anagrams.anagramsOf(args[i]);
+            end = System.nanoTime();
+            System.out.println(args[i] + ": " + group + " in " + (end - start) / 1_000_000. + " ms.");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package effectivejava.chapter7.item45.anagrams;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Two words are anagrams exactly when they contain the same number of each
+ * letter. For a word of lowercase ASCII letters, those 26 counts fit in two
+ * longs at four bits apiece, a through m in the first and n through z in the
+ * second, so the key of an anagram group can be computed without allocating
+ * a sorted copy of the word. Words containing any other character, or more
+ * than 15 of one letter, cannot be packed; callers fall back to alphabetize.
+ */
+// Allocation-free anagram key for lowercase ASCII words
+final class AnagramSignature {
+    private AnagramSignature() { } // Noninstantiable
+
+    private static final int LETTERS_PER_LONG = 13;
+    private static final long LOW_NIBBLES = 0x0F0F_0F0F_0F0F_0F0FL;
+
+    // Packs the letter counts of buf[from, to) into sig[0] and sig[1], or
+    // returns false if the word cannot be packed
+    static boolean pack(ByteBuffer buf, int from, int to, long[] sig) {
+        long first = 0, second = 0;
+        for (int i = from; i < to; i++) {
+            int letter = buf.get(i) - 'a';
+            if (letter < 0 || letter >= 2 * LETTERS_PER_LONG)
+                return false;
+            if (letter < LETTERS_PER_LONG)
+                first += 1L << (4 * letter);
+            else
+                second += 1L << (4 * (letter - LETTERS_PER_LONG));
+        }
+        return finish(first, second, to - from, sig);
+    }
+
+    static boolean pack(CharSequence word, long[] sig) {
+        long first = 0, second = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int letter = word.charAt(i) - 'a';
+            if (letter < 0 || letter >= 2 * LETTERS_PER_LONG)
+                return false;
+            if (letter < LETTERS_PER_LONG)
+                first += 1L << (4 * letter);
+            else
+                second += 1L << (4 * (letter - LETTERS_PER_LONG));
+        }
+        return finish(first, second, word.length(), sig);
+    }
+
+    // A count of 16 carries into the next nibble, which makes the nibbles sum
+    // to less than the length of the word
+    private static boolean finish(long first, long second, int length, long[] sig) {
+        if (length > 2 * LETTERS_PER_LONG * 15 || nibbleSum(first) + nibbleSum(second) != length)
+            return false;
+        sig[0] = first;
+        sig[1] = second;
+        return true;
+    }
+
+    private static int nibbleSum(long x) {
+        long bytes = (x & LOW_NIBBLES) + ((x >>> 4) & LOW_NIBBLES);
+        return (int) ((bytes * 0x0101_0101_0101_0101L) >>> 56);
+    }
+
+    static int hash(long first, long second) {
+        long h = (first * 0x9E37_79B9_7F4A_7C15L) ^ second;
+        h *= 0xC2B2_AE3D_27D4_EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static String alphabetize(String s) {
+        char[] a = s.toCharArray();
+        Arrays.sort(a);
+        return new String(a);
+    }
+}
@@ -0,0 +1,327 @@
+package effectivejava.chapter7.item45.anagrams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Groups the words of a dictionary, one per line, into anagram groups, as
+ * HybridAnagrams does, but fast enough for word lists of many gigabytes.
+ *
+ * The file is memory-mapped rather than read into Strings, and split at line
+ * boundaries into one region per core (more if the file exceeds the 2 GB
+ * limit of a mapping). Each region is grouped in parallel into a partial
+ * table keyed by AnagramSignature, which holds only the offset of each word
+ * in the mapping; no String is created for a word whose signature packs. The
+ * partial tables are then merged, and only the groups of at least
+ * minGroupSize words are decoded into Strings.
+ */
+// Memory-mapped, parallel anagram grouping
+public class MappedAnagrams {
+    private MappedAnagrams() { } // Noninstantiable
+
+    private static final long MAX_REGION = 1 << 30;
+
+    /**
+     * Passes each group of at least minGroupSize anagrams in the UTF-8
+     * dictionary to action, with its words in the order they appear. Empty
+     * lines are ignored.
+     */
+    public static void forEachGroup(Path dictionary, int minGroupSize, Consumer<List<String>> action)
+            throws IOException {
+        Groups groups = group(dictionary);
+        for (int g = 0; g < groups.size(); g++) {
+            if (groups.groupSize(g) < minGroupSize)
+                continue;
+            List<String> group = new ArrayList<>(groups.groupSize(g));
+            groups.forEachWord(g, (buf, from, to) -> group.add(decode(buf, from, to)));
+            action.accept(group);
+        }
+        for (List<String> group : groups.unpacked())
+            if (group.size() >= minGroupSize)
+                action.accept(group);
+    }
+
+    // Groups the words of dictionary without decoding those whose signatures
+    // pack. The mappings outlive the channel, so the groups remain readable.
+    static Groups group(Path dictionary) throws IOException {
+        try (FileChannel channel = FileChannel.open(dictionary, StandardOpenOption.READ)) {
+            long[] bounds = regions(channel);
+            try {
+                return new Groups(IntStream.range(0, bounds.length - 1).parallel()
+                        .mapToObj(i -> new Partial(map(channel, bounds[i], bounds[i + 1])))
+                        .collect(toList()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Region boundaries, each at the start of a line
+    private static long[] regions(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0)
+            return new long[] { 0, size };
+        // No more regions than bytes, or a boundary could fall at position 0
+        int n = (int) Math.min(size,
+                Math.max(Runtime.getRuntime().availableProcessors(), (size + MAX_REGION - 1) / MAX_REGION));
+        long[] bounds = new long[n + 1];
+        int count = 1;
+        for (int i = 1; i < n; i++) {
+            long b = lineStart(channel, size * i / n);
+            if (b > bounds[count - 1] && b < size)
+                bounds[count++] = b;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // The start of the first line that starts at or after pos
+    private static long lineStart(FileChannel channel, long pos) throws IOException {
+        if (pos == 0)
+            return 0;
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (long p = pos - 1; ; p += buf.limit()) {
+            buf.clear();
+            if (channel.read(buf, p) <= 0)
+                return channel.size();
+            buf.flip();
+            for (int i = 0; i < buf.limit(); i++)
+                if (buf.get(i) == '\n')
+                    return p + i + 1;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long from, long to) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The anagram groups of one region. Each group's words form a linked list
+    // of indexes into wordStart and wordNext.
+    private static final class Partial {
+        final ByteBuffer buf;
+        final SignatureTable table = new SignatureTable();
+        int[] head = new int[16], tail = new int[16], size = new int[16];
+        int[] wordStart = new int[1024], wordNext = new int[1024];
+        int words;
+        final Map<String, List<String>> unpacked = new HashMap<>();
+
+        Partial(ByteBuffer buf) {
+            this.buf = buf;
+            long[] sig = new long[2];
+            int limit = buf.limit();
+            for (int start = 0; start < limit; ) {
+                int end = lineEnd(buf, start);
+                int wordEnd = end > start && buf.get(end - 1) == '\r' ? end - 1 : end;
+                if (wordEnd > start) {
+                    if (AnagramSignature.pack(buf, start, wordEnd, sig))
+                        add(table.findOrAdd(sig[0], sig[1]), start);
+                    else {
+                        String word = decode(buf, start, wordEnd);
+                        unpacked.computeIfAbsent(AnagramSignature.alphabetize(word), k -> new ArrayList<>()).add(word);
+                    }
+                }
+                start = end + 1;
+            }
+        }
+
+        private void add(int group, int start) {
+            if (words == wordStart.length) {
+                wordStart = Arrays.copyOf(wordStart, 2 * words);
+                wordNext = Arrays.copyOf(wordNext, 2 * words);
+            }
+            int w = words++;
+            wordStart[w] = start;
+            wordNext[w] = -1;
+            if (group == head.length) {
+                head = Arrays.copyOf(head, 2 * group);
+                tail = Arrays.copyOf(tail, 2 * group);
+                size = Arrays.copyOf(size, 2 * group);
+            }
+            if (size[group]++ == 0)
+                head[group] = w;
+            else
+                wordNext[tail[group]] = w;
+            tail[group] = w;
+        }
+
+        void forEachWord(int group, WordVisitor visitor) throws IOException {
+            for (int w = head[group]; w != -1; w = wordNext[w]) {
+                int start = wordStart[w], end = lineEnd(buf, start);
+                visitor.visit(buf, start, end > start && buf.get(end - 1) == '\r' ? end - 1 : end);
+            }
+        }
+    }
+
+    private static int lineEnd(ByteBuffer buf, int start) {
+        int i = start;
+        while (i < buf.limit() && buf.get(i) != '\n')
+            i++;
+        return i;
+    }
+
+    private static String decode(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.duplicate().position(from).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Receives the UTF-8 bytes buf[from, to) of a word
+    @FunctionalInterface
+    interface WordVisitor {
+        void visit(ByteBuffer buf, int from, int to) throws IOException;
+    }
+
+    // The anagram groups of a whole dictionary, merged from the partial tables.
+    // Groups whose signatures pack are numbered from 0 and hold only the
+    // positions of their words in the mappings; the others hold Strings.
+    static final class Groups {
+        private final List<Partial> partials;
+        private final SignatureTable merged = new SignatureTable();
+        // Each merged group is a linked list of (partial, group) members
+        private int[] total = new int[16], first = new int[16], last = new int[16];
+        private int members;
+        private int[] memberPartial = new int[16], memberGroup = new int[16], memberNext = new int[16];
+        private final List<List<String>> unpacked;
+
+        private Groups(List<Partial> partials) {
+            this.partials = partials;
+            for (int p = 0; p < partials.size(); p++) {
+                SignatureTable table = partials.get(p).table;
+                for (int g = 0; g < table.size(); g++)
+                    addMember(merged.findOrAdd(table.first(g), table.second(g)), p, g);
+            }
+
+            Map<String, List<String>> byLetters = new HashMap<>();
+            for (Partial p : partials)
+                p.unpacked.forEach((key, words) -> byLetters.computeIfAbsent(key, k -> new ArrayList<>()).addAll(words));
+            unpacked = new ArrayList<>(byLetters.values());
+        }
+
+        private void addMember(int m, int p, int g) {
+            if (m == total.length) {
+                total = Arrays.copyOf(total, 2 * m);
+                first = Arrays.copyOf(first, 2 * m);
+                last = Arrays.copyOf(last, 2 * m);
+            }
+            if (members == memberPartial.length) {
+                memberPartial = Arrays.copyOf(memberPartial, 2 * members);
+                memberGroup = Arrays.copyOf(memberGroup, 2 * members);
+                memberNext = Arrays.copyOf(memberNext, 2 * members);
+            }
+            memberPartial[members] = p;
+            memberGroup[members] = g;
+            memberNext[members] = -1;
+            if (total[m] == 0)
+                first[m] = members;
+            else
+                memberNext[last[m]] = members;
+            last[m] = members++;
+            total[m] += partials.get(p).size[g];
+        }
+
+        // The number of groups whose signatures pack
+        int size() {
+            return merged.size();
+        }
+
+        long first(int g) {
+            return merged.first(g);
+        }
+
+        long second(int g) {
+            return merged.second(g);
+        }
+
+        int groupSize(int g) {
+            return total[g];
+        }
+
+        // Visits the words of group g in the order they appear
+        void forEachWord(int g, WordVisitor visitor) throws IOException {
+            for (int i = first[g]; i != -1; i = memberNext[i])
+                partials.get(memberPartial[i]).forEachWord(memberGroup[i], visitor);
+        }
+
+        // The groups whose signatures don't pack
+        List<List<String>> unpacked() {
+            return unpacked;
+        }
+    }
+
+    // Open-addressing table assigning consecutive ids to distinct signatures
+    private static final class SignatureTable {
+        private long[] firsts = new long[16], seconds = new long[16];
+        private int[] slots = new int[32]; // id + 1, or 0 if empty
+        private int size;
+
+        int findOrAdd(long first, long second) {
+            int mask = slots.length - 1;
+            for (int i = AnagramSignature.hash(first, second) & mask; ; i = (i + 1) & mask) {
+                int id = slots[i] - 1;
+                if (id < 0) {
+                    if (size == firsts.length) {
+                        firsts = Arrays.copyOf(firsts, 2 * size);
+                        seconds = Arrays.copyOf(seconds, 2 * size);
+                    }
+                    firsts[size] = first;
+                    seconds[size] = second;
+                    slots[i] = ++size;
+                    if (2 * size > slots.length)
+                        rehash();
+                    return size - 1;
+                }
+                if (firsts[id] == first && seconds[id] == second)
+                    return id;
+            }
+        }
+
+        private void rehash() {
+            slots = new int[2 * slots.length];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int i = AnagramSignature.hash(firsts[id], seconds[id]) & mask;
+                while (slots[i] != 0)
+                    i = (i + 1) & mask;
+                slots[i] = id + 1;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long first(int id) {
+            return firsts[id];
+        }
+
+        long second(int id) {
+            return seconds[id];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dictionary = Paths.get(args[0]);
+        int minGroupSize = Integer.parseInt(args[1]);
+
+        long start = System.nanoTime();
+        forEachGroup(dictionary, minGroupSize, g -> System.out.println(g.size() + ": " + g));
+        long end = System.nanoTime();
+        System.err.println((end - start) / 1_000_000. + " ms.");
+    }
+}
@@ -0,0 +1,157 @@
+package effectivejava.chapter7.item47;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ * PowerSet.of copies every subset into a fresh HashSet, and because Collection
+ * has an int-returning size method, it is limited to 30 elements. When the
+ * power set is too large to return as a collection, a stream is the natural
+ * return type (Item 47), and this class returns one that is cheap in every
+ * respect:
+ *
+ * Each subset is a lightweight Set view backed by a long bitmask, so nothing
+ * is copied, and input sets of up to 63 elements are supported.
+ *
+ * Subsets are produced in Gray-code order: the subset at position i is the
+ * mask i ^ (i >>> 1), so consecutive subsets differ by exactly one element,
+ * namely the element at numberOfTrailingZeros(i). Consumers that maintain
+ * incremental state can add or remove that one element instead of starting
+ * afresh.
+ *
+ * The stream's spliterator splits the range of positions exactly in half, so
+ * parallel streams divide the work evenly (Item 48).
+ *
+ */
+// Lazy, Gray-code-ordered power set with parallel-splittable stream
+public class GrayCodePowerSet {
+	private GrayCodePowerSet() {
+	} // Noninstantiable
+
+	public static final int MAX_SIZE = Long.SIZE - 1;
+
+	public static <E> Stream<Set<E>> of(Set<E> s) {
+		List<E> src = new ArrayList<>(s);
+		if (src.size() > MAX_SIZE)
+			throw new IllegalArgumentException("Set too big " + s);
+		Map<E, Integer> index = new HashMap<>();
+		for (int i = 0; i < src.size(); i++)
+			index.put(src.get(i), i);
+		long last = src.size() == MAX_SIZE ? Long.MAX_VALUE : (1L << src.size()) - 1;
+		return StreamSupport.stream(new PositionSpliterator<>(src, index, 0, last), false);
+	}
+
+	// A subset view backed by a bitmask over src
+	private static final class Subset<E> extends AbstractSet<E> {
+		private final List<E> src;
+		private final Map<E, Integer> index;
+		private final long mask;
+
+		Subset(List<E> src, Map<E, Integer> index, long mask) {
+			this.src = src;
+			this.index = index;
+			this.mask = mask;
+		}
+
+		@Override
+		public int size() {
+			return Long.bitCount(mask);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			Integer i = index.get(o);
+			return i != null && (mask & (1L << i)) != 0;
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				private long remaining = mask;
+
+				@Override
+				public boolean hasNext() {
+					return remaining != 0;
+				}
+
+				@Override
+				public E next() {
+					if (remaining == 0)
+						throw new NoSuchElementException();
+					int i = Long.numberOfTrailingZeros(remaining);
+					remaining &= remaining - 1; // Clear lowest set bit
+					return src.get(i);
+				}
+			};
+		}
+	}
+
+	// Spliterator over the inclusive range of positions [next, last]
+	private static final class PositionSpliterator<E> implements Spliterator<Set<E>> {
+		private final List<E> src;
+		private final Map<E, Integer> index;
+		private final int sizedCharacteristics;
+		private long next;
+		private final long last;
+
+		PositionSpliterator(List<E> src, Map<E, Integer> index, long next, long last) {
+			this.src = src;
+			this.index = index;
+			this.next = next;
+			this.last = last;
+			// With 63 elements there are 2^63 subsets, one more than fits a long
+			this.sizedCharacteristics = last - next == Long.MAX_VALUE ? 0 : SIZED | SUBSIZED;
+		}
+
+		// Unsigned, since next overflows once position Long.MAX_VALUE is taken
+		private boolean exhausted() {
+			return Long.compareUnsigned(next, last) > 0;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Set<E>> action) {
+			if (exhausted())
+				return false;
+			long i = next++;
+			action.accept(new Subset<>(src, index, i ^ (i >>> 1)));
+			return true;
+		}
+
+		@Override
+		public Spliterator<Set<E>> trySplit() {
+			if (exhausted() || last - next < 1)
+				return null;
+			long mid = next + ((last - next) >>> 1);
+			Spliterator<Set<E>> prefix = new PositionSpliterator<>(src, index, next, mid);
+			next = mid + 1;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			if (exhausted())
+				return 0;
+			long span = last - next;
+			return span == Long.MAX_VALUE ? Long.MAX_VALUE : span + 1;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | IMMUTABLE | sizedCharacteristics;
+		}
+	}
+
+	public static void main(String[] args) {
+		Set<String> s = new LinkedHashSet<>(Arrays.asList("a", "b", "c"));
+		GrayCodePowerSet.of(s).forEach(System.out::println);
+
+		// 2^24 subsets of 24 elements, counted in parallel without copying
+		Set<Integer> big = new HashSet<>();
+		for (int i = 0; i < 24; i++)
+			big.add(i);
+		System.out.println(GrayCodePowerSet.of(big).parallel().filter(sub -> sub.contains(0)).count());
+	}
+}
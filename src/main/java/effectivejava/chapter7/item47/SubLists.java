@@ -3,8 +3,11 @@ package effectivejava.chapter7.item47;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * It is possible to translate for-loop Version 3 directly into a stream. The
@@ -40,6 +43,85 @@ public class SubLists {
 				.flatMap(x -> x);
 	}
 
+	// ---------------------------------------------------------------------------------
+	// Version 4: Returns the same stream as Version 2, but from a spliterator that
+	// maps a single long index to its (start, end) pair in O(1). The nested
+	// flatMap of Version 2 can only split the outer range of start indices, whose
+	// rows shrink from n to 1 sublists, so parallel streams divide the work
+	// badly. This spliterator is SIZED and SUBSIZED and splits the n(n+1)/2
+	// sublists exactly in half.
+	public static <E> Stream<List<E>> ofIndexed(List<E> list) {
+		long n = list.size();
+		return StreamSupport.stream(new SubListSpliterator<>(list, 0, n * (n + 1) / 2), false);
+	}
+
+	private static final class SubListSpliterator<E> implements Spliterator<List<E>> {
+		private final List<E> list;
+		private long index; // Index of the next sublist
+		private final long fence; // One past the index of the last sublist
+		private int start = -1, end; // Bounds of the next sublist, once located
+
+		SubListSpliterator(List<E> list, long index, long fence) {
+			this.list = list;
+			this.index = index;
+			this.fence = fence;
+		}
+
+		// Number of sublists that precede the row for the given start index
+		private static long rowOffset(long n, long start) {
+			return start * n - start * (start - 1) / 2;
+		}
+
+		// Inverts rowOffset by solving the quadratic, then corrects any rounding
+		private void locate() {
+			long n = list.size();
+			double b = 2 * n + 1;
+			long s = (long) ((b - Math.sqrt(b * b - 8.0 * index)) / 2);
+			while (s > 0 && rowOffset(n, s) > index)
+				s--;
+			while (rowOffset(n, s + 1) <= index)
+				s++;
+			start = (int) s;
+			end = (int) (s + 1 + index - rowOffset(n, s));
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super List<E>> action) {
+			if (index >= fence)
+				return false;
+			if (start < 0)
+				locate();
+			action.accept(list.subList(start, end));
+			index++;
+			if (++end > list.size()) {
+				start++;
+				end = start + 1;
+			}
+			return true;
+		}
+
+		@Override
+		public Spliterator<List<E>> trySplit() {
+			long mid = (index + fence) >>> 1;
+			if (mid <= index)
+				return null;
+			Spliterator<List<E>> prefix = new SubListSpliterator<>(list, index, mid);
+			index = mid;
+			start = -1; // Relocate lazily
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | SIZED | SUBSIZED;
+		}
+	}
+
 	public static void main(String[] args) {
 		String[] strings = { "a", "b", "c" };
 		List<String> list = Arrays.asList(strings);
@@ -56,5 +138,8 @@ public class SubLists {
 		for (int start = 0; start < list.size(); start++)
 			for (int end = start + 1; end <= list.size(); end++)
 				System.out.println(list.subList(start, end));
+
+		System.out.println("----------------- Version 4 : -----------------------");
+		SubLists.ofIndexed(list).forEach(System.out::println);
 	}
 }
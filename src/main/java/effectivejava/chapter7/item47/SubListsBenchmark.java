@@ -0,0 +1,54 @@
+package effectivejava.chapter7.item47;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ *
+ * Times the sublist streams of SubLists, sequential and parallel, against the
+ * obvious nested for-loop. Each run sums the sizes of all n(n+1)/2 sublists
+ * of a list of n elements. As ever, timings from a harness like this are only
+ * a rough guide; use jmh for accurate microbenchmarks.
+ *
+ */
+// Benchmark of the sublist stream versions
+public class SubListsBenchmark {
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 3_000;
+		int numSets = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			list.add(i);
+
+		for (int set = 0; set < numSets; set++) {
+			System.out.println("Set " + set + ":");
+			time("Version 1", list, SubLists::of, false);
+			time("Version 1 parallel", list, SubLists::of, true);
+			time("Version 2", list, SubLists::ofStream, false);
+			time("Version 2 parallel", list, SubLists::ofStream, true);
+			time("Version 4", list, SubLists::ofIndexed, false);
+			time("Version 4 parallel", list, SubLists::ofIndexed, true);
+
+			long start = System.nanoTime();
+			long total = 0;
+			for (int s = 0; s < list.size(); s++)
+				for (int e = s + 1; e <= list.size(); e++)
+					total += list.subList(s, e).size();
+			report("Nested loop", start, total);
+		}
+	}
+
+	private static void time(String name, List<Integer> list,
+			Function<List<Integer>, Stream<List<Integer>>> version, boolean parallel) {
+		long start = System.nanoTime();
+		Stream<List<Integer>> stream = version.apply(list);
+		long total = (parallel ? stream.parallel() : stream).mapToLong(List::size).sum();
+		report(name, start, total);
+	}
+
+	private static void report(String name, long start, long total) {
+		long end = System.nanoTime();
+		System.out.printf("  %-20s %8.1f ms. (total %d)%n", name, (end - start) / 1_000_000., total);
+	}
+}
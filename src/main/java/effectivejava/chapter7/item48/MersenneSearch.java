@@ -0,0 +1,241 @@
+package effectivejava.chapter7.item48;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TWO;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+/**
+ *
+ * ParallelMersennePrimes hangs because the streams library has no idea how to
+ * parallelize a pipeline whose source is Stream.iterate and whose length is
+ * set by limit: it speculatively computes far more elements than are needed,
+ * and each costs more than all the previous ones together. Even run
+ * sequentially, as in MersennePrimes, the pipeline is slower than it need be,
+ * since isProbablePrime knows nothing about the special form of 2^p - 1.
+ *
+ * This class searches for Mersenne primes with the Lucas-Lehmer test, which
+ * is deterministic and, for numbers of this form, much cheaper: p - 2
+ * squarings modulo 2^p - 1, each reduced with a shift, a mask and an addition
+ * instead of a division. Candidate exponents, which must themselves be prime,
+ * are tested in a bounded pool of worker threads, never more than a fixed
+ * window ahead of the smallest untested exponent. Results are reported in
+ * exponent order, and once the requested number of primes is found, the
+ * tests still under way are cancelled.
+ *
+ * A long search can record its progress in a checkpoint file, which is
+ * written periodically and when the search ends. A search started with an
+ * existing checkpoint resumes after the last exponent it records.
+ *
+ */
+// Parallel Lucas-Lehmer search for Mersenne primes with checkpointing
+public class MersenneSearch {
+	/**
+	 * Returns true if 2^p - 1 is prime. If the calling thread is interrupted,
+	 * the test is abandoned and throws CancellationException.
+	 *
+	 * @throws IllegalArgumentException if p is less than 2
+	 */
+	public static boolean isMersennePrime(int p) {
+		if (p < 2)
+			throw new IllegalArgumentException("Exponent < 2: " + p);
+		if (p == 2)
+			return true; // 3 is prime, though the test below does not apply
+		if (!isPrime(p))
+			return false; // 2^ab - 1 is divisible by 2^a - 1
+		BigInteger m = TWO.pow(p).subtract(ONE);
+		BigInteger s = BigInteger.valueOf(4);
+		for (int i = 0; i < p - 2; i++) {
+			if (Thread.currentThread().isInterrupted())
+				throw new CancellationException("Interrupted testing exponent " + p);
+			s = reduce(s.multiply(s), m, p).subtract(TWO);
+			if (s.signum() < 0)
+				s = s.add(m);
+		}
+		return s.signum() == 0;
+	}
+
+	// x mod 2^p - 1, since 2^p is congruent to 1: fold the high bits onto the low
+	private static BigInteger reduce(BigInteger x, BigInteger m, int p) {
+		while (x.bitLength() > p)
+			x = x.and(m).add(x.shiftRight(p));
+		return x.equals(m) ? BigInteger.ZERO : x;
+	}
+
+	private static boolean isPrime(int n) {
+		if (n < 2)
+			return false;
+		for (int d = 2; (long) d * d <= n; d++)
+			if (n % d == 0)
+				return false;
+		return true;
+	}
+
+	public static class Builder {
+		private int threads = Runtime.getRuntime().availableProcessors();
+		private int window = 0; // Default depends on threads
+		private int maxExponent = Integer.MAX_VALUE;
+		private int limit = Integer.MAX_VALUE;
+		private Path checkpoint = null;
+		private long checkpointMillis = 10_000;
+
+		public Builder threads(int val) {
+			threads = val;
+			return this;
+		}
+
+		// The largest number of candidate exponents under test at once
+		public Builder window(int val) {
+			window = val;
+			return this;
+		}
+
+		public Builder maxExponent(int val) {
+			maxExponent = val;
+			return this;
+		}
+
+		// The number of Mersenne primes after which the search stops
+		public Builder limit(int val) {
+			limit = val;
+			return this;
+		}
+
+		public Builder checkpoint(Path val) {
+			checkpoint = val;
+			return this;
+		}
+
+		public Builder checkpointMillis(long val) {
+			checkpointMillis = val;
+			return this;
+		}
+
+		public MersenneSearch build() {
+			return new MersenneSearch(this);
+		}
+	}
+
+	private final int threads;
+	private final int window;
+	private final int maxExponent;
+	private final int limit;
+	private final Path checkpoint;
+	private final long checkpointNanos;
+
+	// Progress: every exponent up to tested has been tested
+	private int tested = 1;
+	private final List<Integer> found = new ArrayList<>();
+
+	private MersenneSearch(Builder builder) {
+		if (builder.threads <= 0 || builder.window < 0 || builder.limit < 0 || builder.checkpointMillis < 0)
+			throw new IllegalArgumentException("Negative or zero parameter");
+		threads = builder.threads;
+		window = builder.window == 0 ? 2 * builder.threads : builder.window;
+		maxExponent = builder.maxExponent;
+		limit = builder.limit;
+		checkpoint = builder.checkpoint;
+		checkpointNanos = TimeUnit.MILLISECONDS.toNanos(builder.checkpointMillis);
+	}
+
+	private static final class Candidate {
+		final int exponent;
+		final Future<Boolean> result;
+
+		Candidate(int exponent, Future<Boolean> result) {
+			this.exponent = exponent;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * Runs the search, passing each newly found Mersenne prime exponent to
+	 * action in increasing order, and returns all the exponents found so far,
+	 * including those recorded in the checkpoint.
+	 */
+	public List<Integer> run(IntConsumer action) throws IOException, InterruptedException {
+		if (checkpoint != null && Files.exists(checkpoint))
+			load();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Deque<Candidate> pending = new ArrayDeque<>(window);
+		long lastCheckpoint = System.nanoTime();
+		try {
+			int next = tested + 1;
+			while (found.size() < limit) {
+				for (; pending.size() < window && next > 0 && next <= maxExponent; next++) {
+					int p = next;
+					if (isPrime(p))
+						pending.add(new Candidate(p, executor.submit(() -> isMersennePrime(p))));
+				}
+				if (pending.isEmpty())
+					break;
+				Candidate c = pending.remove();
+				try {
+					if (c.result.get()) {
+						found.add(c.exponent);
+						action.accept(c.exponent);
+					}
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Test of exponent " + c.exponent + " failed", e.getCause());
+				}
+				tested = c.exponent;
+				if (checkpoint != null && System.nanoTime() - lastCheckpoint >= checkpointNanos) {
+					save();
+					lastCheckpoint = System.nanoTime();
+				}
+			}
+			if (found.size() < limit)
+				tested = maxExponent; // Ran out of candidates
+		} finally {
+			executor.shutdownNow(); // Cancels the tests that are no longer needed
+			if (checkpoint != null)
+				save();
+		}
+		return Collections.unmodifiableList(new ArrayList<>(found));
+	}
+
+	private void load() throws IOException {
+		Properties props = new Properties();
+		try (Reader in = Files.newBufferedReader(checkpoint)) {
+			props.load(in);
+		}
+		tested = Integer.parseInt(props.getProperty("tested"));
+		String exponents = props.getProperty("found", "");
+		found.clear();
+		if (!exponents.isEmpty())
+			for (String e : exponents.split(","))
+				found.add(Integer.parseInt(e));
+	}
+
+	// Writes a new checkpoint beside the old and then replaces it, so a crash
+	// while writing leaves the old one intact
+	private void save() throws IOException {
+		Properties props = new Properties();
+		props.setProperty("tested", Integer.toString(tested));
+		StringJoiner exponents = new StringJoiner(",");
+		for (int e : found)
+			exponents.add(Integer.toString(e));
+		props.setProperty("found", exponents.toString());
+		Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		try (Writer out = Files.newBufferedWriter(tmp)) {
+			props.store(out, "MersenneSearch checkpoint");
+		}
+		Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int limit = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		MersenneSearch search = new MersenneSearch.Builder().limit(limit)
+				.checkpoint(args.length > 1 ? Paths.get(args[1]) : null).build();
+
+		long start = System.nanoTime();
+		search.run(p -> System.out.println(p + ": 2^" + p + " - 1"));
+		long end = System.nanoTime();
+		System.out.println((end - start) / 1_000_000. + " ms.");
+	}
+}
@@ -0,0 +1,159 @@
+package effectivejava.chapter7.item48;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TWO;
+import static java.util.stream.Collectors.toList;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ * ParallelMersennePrimes hangs because parallel() cannot be told how far
+ * ahead of the consumer it may work. Its source, Stream.iterate, has unknown
+ * size and splits poorly, so the streams library buffers ever larger batches
+ * of elements and evaluates all of them, even though limit(20) needs only a
+ * handful more; each new Mersenne number costs more than the last, so the
+ * pipeline never finishes.
+ *
+ * mapOrdered is an intermediate stage that parallelizes a single expensive
+ * function with an explicit bound on the speculation. It draws elements from
+ * its source one at a time, on the consuming thread, and keeps at most window
+ * of them being mapped at once, by at most parallelism threads. It emits the
+ * results in encounter order, and draws a new element only when the oldest
+ * result is taken. The rest of the pipeline stays sequential, so a downstream
+ * limit stops the drawing at once, and at most window evaluations beyond the
+ * last one needed are wasted. The returned stream refuses to split, so this
+ * holds even if a caller makes it parallel: the streams library would
+ * otherwise split off batches of a thousand or more elements, mapping them
+ * all, which is the very over-speculation mapOrdered exists to avoid.
+ *
+ * Closing the returned stream, most simply with try-with-resources (Item 9),
+ * interrupts the evaluations still under way. The worker threads are daemon
+ * threads that exit when idle, so a stream that is never closed merely lets
+ * its remaining evaluations run to completion.
+ *
+ */
+// Ordered parallel map with bounded lookahead, for unbounded sources
+public class ParallelOps {
+	private ParallelOps() {
+	} // Noninstantiable
+
+	/**
+	 * Returns a stream of the results of applying fn to the elements of source,
+	 * in encounter order, evaluating fn for up to window elements at a time on
+	 * up to parallelism threads.
+	 *
+	 * If fn throws an exception, the stream rethrows it when the corresponding
+	 * result is reached; checked exceptions are wrapped in a
+	 * CompletionException.
+	 */
+	public static <T, R> Stream<R> mapOrdered(Stream<T> source, Function<? super T, ? extends R> fn, int parallelism,
+			int window) {
+		Objects.requireNonNull(fn);
+		if (parallelism <= 0 || window <= 0)
+			throw new IllegalArgumentException("parallelism " + parallelism + ", window " + window);
+		MapOrderedSpliterator<T, R> spliterator = new MapOrderedSpliterator<>(source.sequential().iterator(), fn,
+				parallelism, window);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel).onClose(source::close);
+	}
+
+	private static final class MapOrderedSpliterator<T, R> extends Spliterators.AbstractSpliterator<R> {
+		private final Iterator<T> source;
+		private final Function<? super T, ? extends R> fn;
+		private final int window;
+		private final ThreadPoolExecutor executor;
+		private final Deque<Future<R>> pending;
+
+		MapOrderedSpliterator(Iterator<T> source, Function<? super T, ? extends R> fn, int parallelism, int window) {
+			super(Long.MAX_VALUE, ORDERED);
+			this.source = source;
+			this.fn = fn;
+			this.window = window;
+			this.pending = new ArrayDeque<>(window);
+			this.executor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), r -> {
+						Thread t = new Thread(r, "mapOrdered");
+						t.setDaemon(true);
+						return t;
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		// Never split, so parallel() can't draw elements past the window
+		@Override
+		public Spliterator<R> trySplit() {
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super R> action) {
+			while (pending.size() < window && source.hasNext()) {
+				T t = source.next();
+				pending.add(executor.submit(() -> fn.apply(t)));
+			}
+			Future<R> head = pending.poll();
+			if (head == null) {
+				executor.shutdown();
+				return false;
+			}
+			action.accept(await(head));
+			return true;
+		}
+
+		private R await(Future<R> f) {
+			try {
+				return f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancel();
+				throw new CancellationException("Interrupted while waiting for a result");
+			} catch (ExecutionException e) {
+				cancel();
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new CompletionException(cause);
+			}
+		}
+
+		void cancel() {
+			for (Future<R> f : pending)
+				f.cancel(true);
+			pending.clear();
+			executor.shutdownNow();
+		}
+	}
+
+	// ParallelMersennePrimes, with parallel() replaced by mapOrdered
+	public static void main(String[] args) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		try (Stream<BigInteger> mersennePrimes = mapOrdered(
+				ParallelMersennePrimes.primes().map(p -> TWO.pow(p.intValueExact()).subtract(ONE)),
+				mersenne -> mersenne.isProbablePrime(50) ? mersenne : null, cores, 2 * cores)) {
+			mersennePrimes.filter(Objects::nonNull).limit(20).forEach(mp -> System.out.println(mp.bitLength() + ": " + mp));
+		}
+		long end = System.nanoTime();
+		System.out.println((end - start) / 1_000_000. + " ms.");
+
+		// A caller that makes the stream parallel still can't run past the window
+		AtomicInteger evaluations = new AtomicInteger();
+		int window = 2 * cores;
+		try (Stream<Integer> squares = mapOrdered(Stream.iterate(0, i -> i + 1), i -> {
+			evaluations.incrementAndGet();
+			return i * i;
+		}, cores, window)) {
+			System.out.println(squares.parallel().limit(5).collect(toList()) + " took " + evaluations
+					+ " evaluations; at most " + (5 + window) + " allowed");
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package effectivejava.chapter7.item48;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.LongStream;
+
+/**
+ *
+ * ParallelPrimeCounting shows that a parallel stream can speed up a
+ * compute-intensive pipeline, but the pipeline itself is a poor way to count
+ * primes: it boxes every candidate into a BigInteger and tests it on its own
+ * with isProbablePrime. The Sieve of Eratosthenes does far less work by
+ * crossing off the multiples of each prime, and it parallelizes just as well.
+ *
+ * This sieve is segmented: the odd numbers are divided into segments of 2^18,
+ * each represented by one bit per number in a 32 KB array that stays in the
+ * processor cache while it is sieved. Segments are independent, so a parallel
+ * stream of segment indices spreads them across the common fork-join pool,
+ * and the count for each segment is a sum of Long.bitCount over its words.
+ *
+ * primesInRange returns the primes in a range as a LongStream, sieving one
+ * segment at a time as the stream is consumed. Like any stream whose source
+ * splits well (Item 48), it may be made parallel.
+ *
+ * For all but small n, pi uses the Meissel-Lehmer method instead, which
+ * counts the primes up to n without finding them, in time roughly
+ * proportional to n^(2/3). It still sieves, but only up to about n^(2/3), to
+ * build a table of small prime counts. On a single core, it counts the primes
+ * up to 10^12 in well under a second, where the sieve would take most of an
+ * hour.
+ *
+ */
+// Parallel segmented Sieve of Eratosthenes and Meissel-Lehmer prime counting
+public class PrimeSieve {
+	private PrimeSieve() {
+	} // Noninstantiable
+
+	// Bit i of the sieve stands for the odd number 2i + 1; a set bit means composite
+	private static final int SEGMENT_BITS = 1 << 18;
+	private static final int SEGMENT_WORDS = SEGMENT_BITS / Long.SIZE;
+
+	// The sieve needs the primes up to the square root of its upper bound
+	public static final long MAX_SIEVE = 10_000_000_000_000_000L;
+	private static final long MEISSEL_LEHMER_THRESHOLD = 1L << 22; // Where it starts to win
+
+	private static final ThreadLocal<long[]> BUFFER = ThreadLocal.withInitial(() -> new long[SEGMENT_WORDS]);
+
+	/**
+	 * Returns the number of primes less than or equal to n.
+	 */
+	public static long pi(long n) {
+		return n > MEISSEL_LEHMER_THRESHOLD ? piMeisselLehmer(n) : piSieve(n);
+	}
+
+	public static long piSieve(long n) {
+		checkSieveBound(n);
+		if (n < 2)
+			return 0;
+		int[] primes = oddPrimesUpTo((int) sqrt(n));
+		long bits = (n + 1) / 2; // The odd numbers up to n
+		long segments = (bits + SEGMENT_BITS - 1) / SEGMENT_BITS;
+		long oddPrimes = LongStream.range(0, segments).parallel().map(s -> {
+			long first = s * SEGMENT_BITS;
+			int length = (int) Math.min(SEGMENT_BITS, bits - first);
+			long[] buffer = BUFFER.get();
+			sieve(first, length, primes, buffer, 0);
+			return length - countComposites(buffer, 0, length);
+		}).sum();
+		return oddPrimes + 1; // 2 is prime too
+	}
+
+	/**
+	 * Returns the primes p with lo <= p < hi, in increasing order.
+	 *
+	 * @throws IllegalArgumentException if lo is negative or hi exceeds MAX_SIEVE
+	 */
+	public static LongStream primesInRange(long lo, long hi) {
+		if (lo < 0)
+			throw new IllegalArgumentException("Negative lower bound: " + lo);
+		checkSieveBound(hi);
+		if (hi <= lo)
+			return LongStream.empty();
+		int[] primes = oddPrimesUpTo((int) sqrt(hi - 1));
+		long firstBit = lo / 2, endBit = hi / 2; // The odd numbers in [lo, hi)
+		LongStream odd = endBit <= firstBit ? LongStream.empty()
+				: LongStream.rangeClosed(firstBit / SEGMENT_BITS, (endBit - 1) / SEGMENT_BITS).flatMap(s -> {
+					long first = Math.max(firstBit, s * SEGMENT_BITS);
+					long end = Math.min(endBit, (s + 1) * SEGMENT_BITS);
+					return LongStream.of(primesInSegment(first, (int) (end - first), primes));
+				});
+		return lo <= 2 && 2 < hi ? LongStream.concat(LongStream.of(2), odd) : odd;
+	}
+
+	private static long[] primesInSegment(long firstBit, int length, int[] primes) {
+		long[] buffer = BUFFER.get();
+		sieve(firstBit, length, primes, buffer, 0);
+		long[] result = new long[length - countComposites(buffer, 0, length)];
+		int n = 0;
+		// Bits past length in the last word are clear, so stop after the last prime
+		for (int w = 0; n < result.length; w++)
+			for (long bits = ~buffer[w]; bits != 0 && n < result.length; bits &= bits - 1)
+				result[n++] = 2 * (firstBit + w * Long.SIZE + Long.numberOfTrailingZeros(bits)) + 1;
+		return result;
+	}
+
+	// Marks the odd composites among the length odd numbers starting with
+	// 2 * firstBit + 1, in the bits of dst starting at word off
+	private static void sieve(long firstBit, int length, int[] primes, long[] dst, int off) {
+		int words = (length + Long.SIZE - 1) / Long.SIZE;
+		for (int w = off; w < off + words; w++)
+			dst[w] = 0;
+		long low = 2 * firstBit + 1;
+		long high = low + 2L * (length - 1);
+		for (int p : primes) {
+			long square = (long) p * p;
+			if (square > high)
+				break;
+			long m = Math.max(square, (low + p - 1) / p * p);
+			if ((m & 1) == 0)
+				m += p; // Even multiples are not in the sieve
+			for (long j = (m - low) >>> 1; j < length; j += p)
+				dst[off + (int) (j >>> 6)] |= 1L << j;
+		}
+		if (firstBit == 0)
+			dst[off] |= 1; // 1 is not prime
+	}
+
+	private static int countComposites(long[] a, int off, int length) {
+		int count = 0, full = length / Long.SIZE;
+		for (int w = off; w < off + full; w++)
+			count += Long.bitCount(a[w]);
+		int rest = length % Long.SIZE;
+		if (rest != 0)
+			count += Long.bitCount(a[off + full] & ((1L << rest) - 1));
+		return count;
+	}
+
+	// The odd primes up to limit, found with an unsegmented sieve
+	private static int[] oddPrimesUpTo(int limit) {
+		BitSet composite = new BitSet(limit / 2 + 1);
+		for (int p = 3; (long) p * p <= limit; p += 2)
+			if (!composite.get(p / 2))
+				for (long m = (long) p * p; m <= limit; m += 2 * p)
+					composite.set((int) (m / 2));
+		int[] result = new int[Math.max(0, (limit - 1) / 2 - composite.cardinality())];
+		for (int i = 1, n = 0; n < result.length; i++)
+			if (!composite.get(i))
+				result[n++] = 2 * i + 1;
+		return result;
+	}
+
+	private static void checkSieveBound(long n) {
+		if (n > MAX_SIEVE)
+			throw new IllegalArgumentException("Beyond MAX_SIEVE: " + n);
+	}
+
+	// Meissel-Lehmer
+
+	/**
+	 * Returns the number of primes less than or equal to n using the
+	 * Meissel-Lehmer method. It takes memory proportional to n^(2/3), up to a
+	 * limit of about 50 MB, and is practical up to about 10^15.
+	 */
+	public static long piMeisselLehmer(long n) {
+		return n < 2 ? 0 : new MeisselLehmer(n).pi(n);
+	}
+
+	private static final class MeisselLehmer {
+		private static final long MIN_TABLE = 1L << 20;
+		private static final long MAX_TABLE = 1L << 29;
+
+		// Counts of the primes up to limit
+		private final long limit;
+		private final long[] composite;
+		private final int[] primesBefore; // Odd primes in the words before each word
+
+		// primes[i] is the ith prime, so primes[1] is 2
+		private final int[] primes;
+
+		MeisselLehmer(long n) {
+			long root = sqrt(n);
+			limit = Math.max(root, Math.min(Math.max(root(n, 3) * root(n, 3), MIN_TABLE), MAX_TABLE));
+			int[] base = oddPrimesUpTo((int) sqrt(limit));
+			long bits = (limit + 1) / 2;
+			composite = new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)];
+			long segments = (bits + SEGMENT_BITS - 1) / SEGMENT_BITS;
+			LongStream.range(0, segments).parallel().forEach(s -> {
+				long first = s * SEGMENT_BITS;
+				sieve(first, (int) Math.min(SEGMENT_BITS, bits - first), base, composite, (int) (s * SEGMENT_WORDS));
+			});
+			primesBefore = new int[composite.length];
+			for (int w = 1; w < composite.length; w++)
+				primesBefore[w] = primesBefore[w - 1] + Long.bitCount(~composite[w - 1]);
+
+			// Bit 0 stands for 1, which is not prime, so 2 takes its place
+			primes = new int[(int) piTable(root) + 1];
+			for (int i = 1, bit = 0; i < primes.length; bit++)
+				if (bit == 0 || (composite[bit >>> 6] & (1L << bit)) == 0)
+					primes[i++] = bit == 0 ? 2 : 2 * bit + 1;
+		}
+
+		private long piTable(long x) {
+			if (x < 2)
+				return 0;
+			long bit = (x - 1) / 2; // The largest odd number up to x
+			int w = (int) (bit >>> 6);
+			long mask = -1L >>> (63 - (bit & 63));
+			return 1 + primesBefore[w] + Long.bitCount(~composite[w] & mask);
+		}
+
+		// Lehmer's formula
+		long pi(long x) {
+			if (x <= limit)
+				return piTable(x);
+			int a = (int) pi(root(x, 4));
+			int b = (int) pi(sqrt(x));
+			int c = (int) pi(root(x, 3));
+			long sum = phi(x, a) + (long) (b + a - 2) * (b - a + 1) / 2;
+			for (int i = a + 1; i <= b; i++) {
+				long w = x / primes[i];
+				sum -= pi(w);
+				if (i <= c) {
+					int bi = (int) pi(sqrt(w));
+					for (int j = i; j <= bi; j++)
+						sum -= pi(w / primes[j]) - (j - 1);
+				}
+			}
+			return sum;
+		}
+
+		// The number of integers from 1 to x divisible by none of the first a primes
+		private long phi(long x, int a) {
+			if (a <= WHEEL_PRIMES)
+				return phiWheel(x, a);
+			// Below p_a^2, the only such integers are 1 and the primes above p_a
+			if (x < (long) primes[a] * primes[a])
+				return x < 1 ? 0 : 1 + Math.max(0, piTable(x) - a);
+			long result = phiWheel(x, WHEEL_PRIMES);
+			for (int i = WHEEL_PRIMES + 1; i <= a; i++)
+				result -= phi(x / primes[i], i - 1);
+			return result;
+		}
+	}
+
+	// phi(x, k) for the first few primes is periodic with period 2 * 3 * ... * p_k
+	private static final int WHEEL_PRIMES = 6;
+	private static final int[] WHEEL_PERIOD = new int[WHEEL_PRIMES + 1];
+	private static final int[][] WHEEL = new int[WHEEL_PRIMES + 1][];
+	static {
+		int[] small = { 2, 3, 5, 7, 11, 13 };
+		WHEEL_PERIOD[0] = 1;
+		for (int k = 1; k <= WHEEL_PRIMES; k++)
+			WHEEL_PERIOD[k] = WHEEL_PERIOD[k - 1] * small[k - 1];
+		for (int k = 0; k <= WHEEL_PRIMES; k++) {
+			int period = WHEEL_PERIOD[k];
+			WHEEL[k] = new int[period + 1];
+			for (int r = 1; r <= period; r++) {
+				boolean coprime = true;
+				for (int i = 0; i < k && coprime; i++)
+					coprime = r % small[i] != 0;
+				WHEEL[k][r] = WHEEL[k][r - 1] + (coprime ? 1 : 0);
+			}
+		}
+	}
+
+	private static long phiWheel(long x, int k) {
+		int period = WHEEL_PERIOD[k];
+		return x / period * WHEEL[k][period] + WHEEL[k][(int) (x % period)];
+	}
+
+	private static long sqrt(long n) {
+		return root(n, 2);
+	}
+
+	// The largest r with r^k <= n
+	private static long root(long n, int k) {
+		long r = (long) Math.pow(n, 1.0 / k);
+		while (r > 0 && powerExceeds(r, k, n))
+			r--;
+		while (!powerExceeds(r + 1, k, n))
+			r++;
+		return r;
+	}
+
+	private static boolean powerExceeds(long r, int k, long n) {
+		long p = 1;
+		for (int i = 0; i < k; i++) {
+			if (p > n / r)
+				return true;
+			p *= r;
+		}
+		return p > n;
+	}
+
+	public static void main(String[] args) {
+		long n = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+
+		long start = System.nanoTime();
+		long count = piSieve(n);
+		long end = System.nanoTime();
+		System.out.println("Sieve: pi(" + n + ") = " + count + " in " + (end - start) / 1_000_000. + " ms.");
+
+		start = System.nanoTime();
+		count = piMeisselLehmer(n);
+		end = System.nanoTime();
+		System.out.println("Meissel-Lehmer: pi(" + n + ") = " + count + " in " + (end - start) / 1_000_000. + " ms.");
+
+		System.out.println(Arrays.toString(primesInRange(1_000_000_000, 1_000_000_100).toArray()));
+	}
+}
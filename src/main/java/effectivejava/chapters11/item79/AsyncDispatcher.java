@@ -0,0 +1,195 @@
+package effectivejava.chapters11.item79;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import effectivejava.chapter4.item18.LatencyHistogram;
+
+/**
+ *
+ * Even with CopyOnWriteArrayList, ObservableSet calls every observer on the
+ * adding thread, so one slow observer stalls every writer. An asynchronous
+ * dispatcher moves the alien method invocations off the writer's thread
+ * altogether: additions are published to a bounded queue and delivered to the
+ * observers in batches, via SetObserver.addedAll, by a task running on an
+ * executor (Item 80).
+ *
+ * At most one delivery task runs at a time, so under the BLOCK and DROP
+ * policies each observer sees the delivered elements in the order they were
+ * added. What a writer does when the queue is full is determined by the
+ * Backpressure policy; under COALESCE, elements that overflow the queue are
+ * delivered out of order, after the queued elements that follow them. If the
+ * executor rejects the delivery task, for instance because it has been shut
+ * down, the additions waiting for delivery are discarded and counted as
+ * dropped.
+ *
+ */
+// Asynchronous batched observer dispatch for ObservableSet
+public class AsyncDispatcher<E> {
+	public enum Backpressure {
+		// Writers wait for space. An observer that adds to the set it observes
+		// can deadlock the dispatcher under this policy!
+		BLOCK,
+
+		// Writers discard the notification and carry on
+		DROP,
+
+		// Writers park the element in an overflow set, delivered as a batch of
+		// its own once the queue is drained, in no particular order. The
+		// overflow holds each element at most once, so it can grow no larger
+		// than the observed set itself.
+		COALESCE
+	}
+
+	private static class Event<E> {
+		final E element;
+		final long publishedNanos;
+
+		Event(E element, long publishedNanos) {
+			this.element = element;
+			this.publishedNanos = publishedNanos;
+		}
+	}
+
+	private final ObservableSet<E> set;
+	private final List<SetObserver<E>> observers;
+	private final Executor executor;
+	private final Backpressure backpressure;
+	private final int maxBatchSize;
+	private final BlockingQueue<Event<E>> queue;
+	private final Set<E> overflow = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LatencyHistogram deliveryLag = new LatencyHistogram();
+
+	AsyncDispatcher(ObservableSet<E> set, List<SetObserver<E>> observers, Executor executor, int capacity,
+			int maxBatchSize, Backpressure backpressure) {
+		if (capacity <= 0 || maxBatchSize <= 0)
+			throw new IllegalArgumentException("Capacity: " + capacity + ", max batch size: " + maxBatchSize);
+		this.set = set;
+		this.observers = observers;
+		this.executor = Objects.requireNonNull(executor);
+		this.backpressure = Objects.requireNonNull(backpressure);
+		this.maxBatchSize = maxBatchSize;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+
+	void publish(E element) {
+		Event<E> event = new Event<>(element, System.nanoTime());
+		published.increment();
+		if (!queue.offer(event)) {
+			switch (backpressure) {
+			case BLOCK:
+				try {
+					queue.put(event);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped.increment();
+					return;
+				}
+				break;
+			case DROP:
+				dropped.increment();
+				return;
+			case COALESCE:
+				if (!overflow.add(element))
+					coalesced.increment();
+				break;
+			}
+		}
+		scheduleDelivery();
+	}
+
+	private void scheduleDelivery() {
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::deliver);
+			} catch (RejectedExecutionException e) {
+				// No task will ever deliver what is waiting, so drop it, and let
+				// the next publish try the executor again
+				scheduled.set(false);
+				discardPending();
+			}
+		}
+	}
+
+	private void discardPending() {
+		List<Event<E>> events = new ArrayList<>();
+		dropped.add(queue.drainTo(events));
+		for (E e : overflow)
+			if (overflow.remove(e))
+				dropped.increment();
+	}
+
+	private void deliver() {
+		List<Event<E>> events = new ArrayList<>(maxBatchSize);
+		do {
+			while (queue.drainTo(events, maxBatchSize) > 0) {
+				List<E> batch = new ArrayList<>(events.size());
+				for (Event<E> event : events)
+					batch.add(event.element);
+				deliveryLag.record(System.nanoTime() - events.get(0).publishedNanos);
+				deliverBatch(batch);
+				events.clear();
+			}
+			if (!overflow.isEmpty()) {
+				List<E> batch = new ArrayList<>();
+				for (Iterator<E> it = overflow.iterator(); it.hasNext();) {
+					batch.add(it.next());
+					it.remove();
+				}
+				deliverBatch(batch);
+			}
+			scheduled.set(false);
+			// An element published after the last drain but before we cleared
+			// the flag would otherwise wait for the next publish
+		} while ((!queue.isEmpty() || !overflow.isEmpty()) && scheduled.compareAndSet(false, true));
+	}
+
+	private void deliverBatch(List<E> batch) {
+		List<E> view = Collections.unmodifiableList(batch);
+		for (SetObserver<E> observer : observers) {
+			try {
+				observer.addedAll(set, view);
+			} catch (RuntimeException e) {
+				// One failing observer mustn't starve the others or kill delivery
+				Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException(t, e);
+			}
+		}
+		delivered.add(batch.size());
+	}
+
+	public long published() {
+		return published.sum();
+	}
+
+	public long delivered() {
+		return delivered.sum();
+	}
+
+	public long dropped() {
+		return dropped.sum();
+	}
+
+	// Additions folded into an element already waiting in the overflow set
+	public long coalesced() {
+		return coalesced.sum();
+	}
+
+	// Number of published additions not yet delivered to the observers
+	public long lag() {
+		return published() - delivered() - dropped() - coalesced();
+	}
+
+	// Time from publication of the oldest element in each batch to delivery
+	public LatencyHistogram deliveryLag() {
+		return deliveryLag;
+	}
+}
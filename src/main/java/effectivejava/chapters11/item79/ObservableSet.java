@@ -1,7 +1,9 @@
 package effectivejava.chapters11.item79;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * 
@@ -80,6 +82,14 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class ObservableSet<E> extends ForwardingSet<E> {
 	public ObservableSet(Set<E> set) {
 		super(set);
+		dispatcher = null;
+	}
+
+	private ObservableSet(Set<E> set, Executor executor, int capacity, int maxBatchSize,
+			AsyncDispatcher.Backpressure backpressure) {
+		super(set);
+		dispatcher = new AsyncDispatcher<>(this, observersWithCopyOnWrite, executor, capacity, maxBatchSize,
+				backpressure);
 	}
 
 	// ----------------------------------------------------------------
@@ -134,11 +144,53 @@ public class ObservableSet<E> extends ForwardingSet<E> {
 
 	// ---------------------------------------------------------------
 
+	// Version 3 : Asynchronous batched dispatch - observers registered with
+	// addObserver2 are called on the executor's threads, never the writer's
+	private final AsyncDispatcher<E> dispatcher; // null if dispatch is synchronous
+
+	public static <E> ObservableSet<E> withAsyncDispatch(Set<E> set, Executor executor, int capacity,
+			int maxBatchSize, AsyncDispatcher.Backpressure backpressure) {
+		return new ObservableSet<>(set, executor, capacity, maxBatchSize, backpressure);
+	}
+
+	// Returns the dispatcher, for its lag metrics
+	public AsyncDispatcher<E> dispatcher() {
+		if (dispatcher == null)
+			throw new IllegalStateException("Dispatch is synchronous");
+		return dispatcher;
+	}
+
+	// ---------------------------------------------------------------
+
+	// Version 4 : Observer registry without copying - see ObserverRegistry.
+	// Together with a concurrent backing set, this makes the whole
+	// observable set safe for concurrent writers and registration churn.
+	private final ObserverRegistry<E> registry = new ObserverRegistry<>();
+
+	public static <E> ObservableSet<E> concurrent() {
+		return new ObservableSet<>(ConcurrentHashMap.newKeySet());
+	}
+
+	public void addObserver4(SetObserver<E> observer) {
+		registry.add(observer);
+	}
+
+	public boolean removeObserver4(SetObserver<E> observer) {
+		return registry.remove(observer);
+	}
+
+	// ---------------------------------------------------------------
+
 	@Override
 	public boolean add(E element) {
 		boolean added = super.add(element);
-		if (added)
-			notifyElementAdded2(element);
+		if (added) {
+			if (dispatcher != null)
+				dispatcher.publish(element);
+			else
+				notifyElementAdded2(element);
+			registry.notifyAdded(this, element);
+		}
 		return added;
 	}
 
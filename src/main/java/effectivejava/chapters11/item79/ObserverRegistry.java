@@ -0,0 +1,45 @@
+package effectivejava.chapters11.item79;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * CopyOnWriteArrayList is perfect for observer lists that are rarely modified,
+ * but every registration copies the whole array, so thousands of short-lived
+ * observers make it quadratic. This registry keeps observers in a
+ * ConcurrentHashMap instead, so adding and removing an observer is O(1) and
+ * never copies.
+ *
+ * What CopyOnWriteArrayList gives for free is a snapshot: a notification
+ * never reaches an observer registered while it was in progress. The registry
+ * recovers this with epochs. Each registration is stamped with a new epoch,
+ * and a notification delivers only to observers whose stamp is no later than
+ * the epoch it read when it started. An observer removed during a
+ * notification may or may not receive it, as with any weakly consistent
+ * iteration. Registering the same observer twice has no effect.
+ *
+ */
+// Epoch-stamped observer registry atop ConcurrentHashMap
+class ObserverRegistry<E> {
+	private final AtomicLong epoch = new AtomicLong();
+	private final ConcurrentMap<SetObserver<E>, Long> observers = new ConcurrentHashMap<>();
+
+	void add(SetObserver<E> observer) {
+		observers.putIfAbsent(observer, epoch.incrementAndGet());
+	}
+
+	boolean remove(SetObserver<E> observer) {
+		return observers.remove(observer) != null;
+	}
+
+	// No lock is held while the observers run, so they may call back freely
+	void notifyAdded(ObservableSet<E> set, E element) {
+		long snapshot = epoch.get();
+		observers.forEach((observer, registered) -> {
+			if (registered <= snapshot)
+				observer.added(set, element);
+		});
+	}
+}
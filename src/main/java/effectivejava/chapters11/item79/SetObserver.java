@@ -1,5 +1,7 @@
 package effectivejava.chapters11.item79;
 
+import java.util.List;
+
 /**
  * 
  * This interface is structurally identical to BiConsumer<ObservableSet<E>,E>.
@@ -14,4 +16,11 @@ package effectivejava.chapters11.item79;
 public interface SetObserver<E> {
 	// Invoked when an element is added to the observable set
 	void added(ObservableSet<E> set, E element);
+
+	// Invoked with a batch of added elements when dispatch is asynchronous.
+	// Observers that can process a batch at once should override this.
+	default void addedAll(ObservableSet<E> set, List<E> elements) {
+		for (E element : elements)
+			added(set, element);
+	}
 }
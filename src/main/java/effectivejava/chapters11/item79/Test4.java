@@ -0,0 +1,50 @@
+package effectivejava.chapters11.item79;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *
+ * With asynchronous dispatch, a slow observer no longer stalls the adding
+ * thread. The writer below finishes almost at once, while the observer, which
+ * takes a millisecond per batch, receives the elements in batches on the
+ * executor's thread. Under the DROP policy, additions that find the queue
+ * full are discarded instead of blocking the writer.
+ *
+ */
+// Asynchronous batched test of ObservableSet
+public class Test4 {
+	public static void main(String[] args) throws InterruptedException {
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		ObservableSet<Integer> set = ObservableSet.withAsyncDispatch(new HashSet<>(), exec, 1024, 64,
+				AsyncDispatcher.Backpressure.DROP);
+
+		set.addObserver2(new SetObserver<>() {
+			public void added(ObservableSet<Integer> s, Integer e) {
+				System.out.println(e);
+			}
+
+			public void addedAll(ObservableSet<Integer> s, List<Integer> elements) {
+				System.out.println(elements.size() + " elements: " + elements.get(0) + "..");
+				try {
+					Thread.sleep(1); // Slow observer
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 10_000; i++)
+			set.add(i);
+		System.out.println("Writer done in " + (System.nanoTime() - start) / 1_000_000. + " ms.");
+
+		while (set.dispatcher().lag() > 0)
+			Thread.sleep(10);
+		exec.shutdown();
+
+		AsyncDispatcher<Integer> d = set.dispatcher();
+		System.out.println("published=" + d.published() + ", delivered=" + d.delivered() + ", dropped="
+				+ d.dropped() + ", lag: " + d.deliveryLag());
+	}
+}
@@ -0,0 +1,81 @@
+package effectivejava.chapters11.item79;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * A stress test of the concurrent observable set, mirroring Test1 through
+ * Test3 under concurrency. Several writers add to the set while other threads
+ * register and unregister thousands of short-lived observers. A permanent
+ * observer must see every element exactly once (Test1); an observer that
+ * unsubscribes itself from within its callback must not cause a
+ * ConcurrentModificationException (Test2); and one that unsubscribes through
+ * a background thread must not deadlock (Test3), since no lock is held while
+ * observers run.
+ *
+ */
+// Concurrent stress test of ObservableSet
+public class Test5 {
+	public static void main(String[] args) throws Exception {
+		int numWriters = 4;
+		int perWriter = 100_000;
+		ObservableSet<Integer> set = ObservableSet.concurrent();
+
+		LongAdder seen = new LongAdder();
+		set.addObserver4((s, e) -> seen.increment());
+
+		set.addObserver4(new SetObserver<>() {
+			public void added(ObservableSet<Integer> s, Integer e) {
+				if (e == 23)
+					s.removeObserver4(this);
+			}
+		});
+
+		ExecutorService background = Executors.newSingleThreadExecutor();
+		set.addObserver4(new SetObserver<>() {
+			public void added(ObservableSet<Integer> s, Integer e) {
+				if (e == 23) {
+					try {
+						background.submit(() -> s.removeObserver4(this)).get();
+					} catch (ExecutionException | InterruptedException ex) {
+						throw new AssertionError(ex);
+					}
+				}
+			}
+		});
+
+		ExecutorService exec = Executors.newFixedThreadPool(numWriters + 2);
+		CountDownLatch writersDone = new CountDownLatch(numWriters);
+		LongAdder registrations = new LongAdder();
+		for (int c = 0; c < 2; c++) {
+			exec.execute(() -> {
+				while (writersDone.getCount() > 0) {
+					SetObserver<Integer> shortLived = (s, e) -> {
+					};
+					set.addObserver4(shortLived);
+					set.removeObserver4(shortLived);
+					registrations.increment();
+				}
+			});
+		}
+		for (int w = 0; w < numWriters; w++) {
+			int base = w * perWriter;
+			exec.execute(() -> {
+				for (int i = base; i < base + perWriter; i++)
+					set.add(i);
+				writersDone.countDown();
+			});
+		}
+
+		writersDone.await();
+		exec.shutdown();
+		exec.awaitTermination(1, TimeUnit.MINUTES);
+		background.shutdown();
+
+		System.out.println("size=" + set.size() + ", seen=" + seen.sum() + ", registrations="
+				+ registrations.sum());
+		if (seen.sum() != numWriters * perWriter)
+			throw new AssertionError("Lost notifications");
+	}
+}
@@ -0,0 +1,203 @@
+package effectivejava.chapters11.item81;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Intern keeps every string it has ever seen in a static map, so interning
+ * values from an unbounded domain, such as request headers, leaks memory. As
+ * Item 81 notes, String.intern must employ some strategy to keep from leaking
+ * memory in a long-lived application. This interner has two:
+ *
+ * Canonical strings are held only weakly, so once no one else refers to a
+ * string, the garbage collector may reclaim it and its entry is expunged.
+ *
+ * Optionally, the number of entries is bounded. When a stripe is full, the
+ * clock algorithm evicts an entry that has not been looked up since the clock
+ * hand last passed it, an inexpensive approximation of LRU. A string that is
+ * still in use after its entry is evicted stays valid, but a later intern call
+ * may return a different, equal instance.
+ *
+ * Lookups keep the fast path of Intern Version 2: a get on a ConcurrentHashMap,
+ * falling back to putIfAbsent only on a miss. Only the eviction bookkeeping on
+ * a miss takes a lock, and that is striped by hash.
+ *
+ */
+// Bounded, weak-valued concurrent canonicalizing map
+public class BoundedIntern {
+	private static final int STRIPES = 16;
+
+	// Map key and value. Equality is by string contents while the string is
+	// alive, and by identity once the reference is cleared.
+	private static final class Entry extends WeakReference<String> {
+		final int hash;
+		volatile boolean referenced; // Clock bit
+
+		Entry(String s, ReferenceQueue<String> queue) {
+			super(s, queue);
+			hash = s.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this)
+				return true;
+			if (!(o instanceof Entry))
+				return false;
+			String s = get();
+			return s != null && s.equals(((Entry) o).get());
+		}
+	}
+
+	// Lookup key for a string, so lookups need not create a weak reference.
+	// ConcurrentHashMap calls the lookup key's equals method.
+	private static final class Probe {
+		final String s;
+
+		Probe(String s) {
+			this.s = s;
+		}
+
+		@Override
+		public int hashCode() {
+			return s.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Entry && s.equals(((Entry) o).get());
+		}
+	}
+
+	// Clock ring for the entries in one stripe; guarded by its own lock
+	private static final class Stripe {
+		final Entry[] ring;
+		int count;
+		int hand;
+
+		Stripe(int capacity) {
+			ring = new Entry[capacity];
+		}
+	}
+
+	private final ConcurrentMap<Object, Entry> map = new ConcurrentHashMap<>();
+	private final ReferenceQueue<String> queue = new ReferenceQueue<>();
+	private final Stripe[] stripes; // null if unbounded
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	// Returns an interner bounded only by the reachability of its strings
+	public BoundedIntern() {
+		stripes = null;
+	}
+
+	// Returns an interner that holds at most roughly maxSize entries
+	public BoundedIntern(int maxSize) {
+		if (maxSize < STRIPES)
+			throw new IllegalArgumentException("Max size < " + STRIPES + ": " + maxSize);
+		stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new Stripe(maxSize / STRIPES);
+	}
+
+	public String intern(String s) {
+		Entry e = map.get(new Probe(s));
+		if (e != null) {
+			String result = e.get();
+			if (result != null) {
+				if (!e.referenced)
+					e.referenced = true; // Avoid writing a shared line needlessly
+				hits.increment();
+				return result;
+			}
+		}
+		misses.increment();
+		expungeStaleEntries();
+
+		Entry entry = new Entry(s, queue);
+		while (true) {
+			Entry previous = map.putIfAbsent(entry, entry);
+			if (previous == null) {
+				admit(entry);
+				return s;
+			}
+			String result = previous.get();
+			if (result != null)
+				return result; // Lost the race to another thread
+			map.remove(previous, previous); // Cleared since we looked; retry
+		}
+	}
+
+	private void admit(Entry entry) {
+		if (stripes == null)
+			return;
+		Stripe stripe = stripes[entry.hash & (STRIPES - 1)];
+		synchronized (stripe) {
+			Entry[] ring = stripe.ring;
+			if (stripe.count < ring.length) {
+				ring[stripe.count++] = entry;
+				return;
+			}
+			while (true) {
+				Entry candidate = ring[stripe.hand];
+				if (candidate.get() != null && candidate.referenced) {
+					candidate.referenced = false; // Second chance
+				} else {
+					if (map.remove(candidate, candidate) && candidate.get() != null)
+						evictions.increment();
+					ring[stripe.hand] = entry;
+					stripe.hand = (stripe.hand + 1) % ring.length;
+					return;
+				}
+				stripe.hand = (stripe.hand + 1) % ring.length;
+			}
+		}
+	}
+
+	private void expungeStaleEntries() {
+		for (Object ref; (ref = queue.poll()) != null;)
+			map.remove(ref, ref);
+	}
+
+	public int size() {
+		expungeStaleEntries();
+		return map.size();
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	public static void main(String[] args) {
+		BoundedIntern intern = new BoundedIntern(1024);
+		for (int i = 0; i < 100_000; i++) {
+			String header = "X-Request-" + (i % 10 == 0 ? i : i % 100);
+			intern.intern(header);
+		}
+		System.out.println("size=" + intern.size() + ", hits=" + intern.hitCount() + ", misses="
+				+ intern.missCount() + ", evictions=" + intern.evictionCount());
+
+		String a = intern.intern(new String("Accept"));
+		String b = intern.intern(new String("Accept"));
+		System.out.println(a == b);
+	}
+}
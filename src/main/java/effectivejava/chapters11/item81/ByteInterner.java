@@ -0,0 +1,136 @@
+package effectivejava.chapters11.item81;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ *
+ * To intern a token decoded from a network buffer with Intern.intern, you must
+ * first create a String, only to discover, most of the time, that an equal one
+ * was already interned. This interner looks tokens up by their encoded bytes
+ * instead: it hashes and compares the bytes in place, and decodes a String
+ * only on a miss. Equal byte sequences decode to equal strings, so each
+ * interner is tied to one charset, typically UTF-8 or ISO-8859-1.
+ *
+ * Reads are lock-free, like the get in Intern Version 2: entries are immutable
+ * and the table is published through a volatile field, so a reader sees
+ * either an entry or an empty slot. A reader that misses retries under the
+ * lock before inserting, so no token is ever interned twice.
+ *
+ */
+// Canonicalizing map keyed by encoded bytes
+public class ByteInterner {
+	private static final class Entry {
+		final byte[] bytes;
+		final int hash;
+		final String value;
+
+		Entry(byte[] bytes, int hash, String value) {
+			this.bytes = bytes;
+			this.hash = hash;
+			this.value = value;
+		}
+	}
+
+	private final Charset charset;
+	private volatile Entry[] table = new Entry[64]; // Length is a power of two
+	private int size; // Guarded by this
+
+	public ByteInterner(Charset charset) {
+		this.charset = Objects.requireNonNull(charset);
+	}
+
+	public String intern(byte[] a, int off, int len) {
+		Objects.checkFromIndexSize(off, len, a.length);
+		int hash = 1;
+		for (int i = off; i < off + len; i++)
+			hash = 31 * hash + a[i];
+
+		Entry[] t = table;
+		int mask = t.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Entry e = t[i];
+			if (e == null)
+				break;
+			if (e.hash == hash && Arrays.equals(e.bytes, 0, e.bytes.length, a, off, off + len))
+				return e.value;
+		}
+		return internSlow(Arrays.copyOfRange(a, off, off + len), hash);
+	}
+
+	// Reads len bytes from absolute index off; the buffer's position is unchanged
+	public String intern(ByteBuffer buf, int off, int len) {
+		Objects.checkFromIndexSize(off, len, buf.limit());
+		int hash = 1;
+		for (int i = off; i < off + len; i++)
+			hash = 31 * hash + buf.get(i);
+
+		Entry[] t = table;
+		int mask = t.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Entry e = t[i];
+			if (e == null)
+				break;
+			if (e.hash == hash && equals(e.bytes, buf, off, len))
+				return e.value;
+		}
+		byte[] bytes = new byte[len];
+		for (int i = 0; i < len; i++)
+			bytes[i] = buf.get(off + i);
+		return internSlow(bytes, hash);
+	}
+
+	private static boolean equals(byte[] bytes, ByteBuffer buf, int off, int len) {
+		if (bytes.length != len)
+			return false;
+		for (int i = 0; i < len; i++)
+			if (bytes[i] != buf.get(off + i))
+				return false;
+		return true;
+	}
+
+	private synchronized String internSlow(byte[] bytes, int hash) {
+		Entry[] t = table;
+		int mask = t.length - 1;
+		int i = hash & mask;
+		for (Entry e; (e = t[i]) != null; i = (i + 1) & mask)
+			if (e.hash == hash && Arrays.equals(e.bytes, bytes))
+				return e.value; // Inserted since our lock-free probe
+		String value = new String(bytes, charset);
+		t[i] = new Entry(bytes, hash, value);
+		if (++size > t.length / 2)
+			table = rehash(t);
+		return value;
+	}
+
+	private static Entry[] rehash(Entry[] old) {
+		Entry[] t = new Entry[old.length * 2];
+		int mask = t.length - 1;
+		for (Entry e : old) {
+			if (e != null) {
+				int i = e.hash & mask;
+				while (t[i] != null)
+					i = (i + 1) & mask;
+				t[i] = e;
+			}
+		}
+		return t;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public static void main(String[] args) {
+		ByteInterner interner = new ByteInterner(StandardCharsets.UTF_8);
+		byte[] packet = "GET /index.html HTTP/1.1\r\nHost: example.com\r\n".getBytes(StandardCharsets.UTF_8);
+
+		String method = interner.intern(packet, 0, 3);
+		String again = interner.intern(ByteBuffer.wrap(packet), 0, 3);
+		String version = interner.intern(packet, 16, 8);
+		System.out.println(method + " " + version + " " + (method == again) + " " + interner.size());
+	}
+}
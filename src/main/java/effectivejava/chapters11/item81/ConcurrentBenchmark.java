@@ -0,0 +1,252 @@
+package effectivejava.chapters11.item81;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import effectivejava.chapter4.item18.LatencyHistogram;
+
+/**
+ *
+ * ConcurrentTimer times a single run of an action, which, as its documentation
+ * warns, won't yield accurate timings unless the action does a fair amount of
+ * work. This harness builds on it to measure small operations: for each
+ * concurrency level, it runs warmup iterations, whose results are discarded
+ * while the VM compiles the code under test, and then measurement iterations.
+ * In each iteration, every worker thread performs the operation repeatedly for
+ * a fixed time, counting its own calls, so that unfair scheduling shows up as
+ * uneven per-thread counts. Results can be emitted as CSV or JSON for
+ * comparison across runs.
+ *
+ * Reading the clock and recording a latency cost about as much as a fast
+ * operation such as Intern.intern, so the workers don't time every call.
+ * They make calls in batches, reading the clock only between batches, and
+ * time just the first call of each batch into a shared latency histogram.
+ * Batches double in size until one takes at least BATCH_NANOS, so the
+ * instrumentation is negligible for fast operations, while a slow operation
+ * has every call timed. The cost of a clock read, measured once when the
+ * class is loaded, is subtracted from every sample. Throughput is the number
+ * of calls made divided by the elapsed time.
+ *
+ * This is still no substitute for a specialized framework such as jmh [JMH],
+ * but it is far more trustworthy than a single wall-clock time.
+ *
+ */
+// Concurrent benchmark harness built atop ConcurrentTimer
+public class ConcurrentBenchmark {
+	private static final long BATCH_NANOS = 10_000;
+	private static final long CLOCK_NANOS = clockOverhead();
+
+	// The typical time between two back-to-back clock reads, once warmed up
+	private static long clockOverhead() {
+		long best = Long.MAX_VALUE;
+		long[] deltas = new long[10_000];
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < deltas.length; i++) {
+				long start = System.nanoTime();
+				deltas[i] = System.nanoTime() - start;
+			}
+			Arrays.sort(deltas);
+			best = Math.min(best, deltas[deltas.length / 2]);
+		}
+		return best;
+	}
+
+	// An operation under test. threadIndex identifies the calling worker.
+	@FunctionalInterface
+	public interface Operation {
+		void run(int threadIndex, long opIndex);
+	}
+
+	public static class Result {
+		private final String name;
+		private final int threads;
+		private final long elapsedNanos;
+		private final long[] threadOps;
+		private final LatencyHistogram latency;
+
+		private Result(String name, int threads, long elapsedNanos, long[] threadOps, LatencyHistogram latency) {
+			this.name = name;
+			this.threads = threads;
+			this.elapsedNanos = elapsedNanos;
+			this.threadOps = threadOps;
+			this.latency = latency;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public int threads() {
+			return threads;
+		}
+
+		public long totalOps() {
+			return Arrays.stream(threadOps).sum();
+		}
+
+		public long[] threadOps() {
+			return threadOps.clone();
+		}
+
+		public double opsPerSecond() {
+			return totalOps() * 1e9 / elapsedNanos;
+		}
+
+		public LatencyHistogram latency() {
+			return latency;
+		}
+	}
+
+	public static class Builder {
+		private int warmupIterations = 3;
+		private int measurementIterations = 5;
+		private long iterationMillis = 500;
+		private int[] threadCounts = { 1 };
+
+		public Builder warmupIterations(int val) {
+			warmupIterations = val;
+			return this;
+		}
+
+		public Builder measurementIterations(int val) {
+			measurementIterations = val;
+			return this;
+		}
+
+		public Builder iterationMillis(long val) {
+			iterationMillis = val;
+			return this;
+		}
+
+		public Builder threadCounts(int... val) {
+			threadCounts = val.clone();
+			return this;
+		}
+
+		// Sweeps 1, 2, 4, ... up to and including maxThreads
+		public Builder threadsUpTo(int maxThreads) {
+			List<Integer> counts = new ArrayList<>();
+			for (int n = 1; n < maxThreads; n *= 2)
+				counts.add(n);
+			counts.add(maxThreads);
+			threadCounts = counts.stream().mapToInt(Integer::intValue).toArray();
+			return this;
+		}
+
+		public ConcurrentBenchmark build() {
+			return new ConcurrentBenchmark(this);
+		}
+	}
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+	private final int[] threadCounts;
+
+	private ConcurrentBenchmark(Builder builder) {
+		if (builder.measurementIterations <= 0 || builder.iterationMillis <= 0)
+			throw new IllegalArgumentException("Nothing to measure");
+		warmupIterations = builder.warmupIterations;
+		measurementIterations = builder.measurementIterations;
+		iterationNanos = TimeUnit.MILLISECONDS.toNanos(builder.iterationMillis);
+		threadCounts = builder.threadCounts;
+	}
+
+	// Returns one result per concurrency level
+	public List<Result> run(String name, Operation op) throws InterruptedException {
+		int maxThreads = Arrays.stream(threadCounts).max().orElse(1);
+		// Must allow at least maxThreads threads, or the timer never completes
+		ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+		try {
+			List<Result> results = new ArrayList<>();
+			for (int threads : threadCounts) {
+				for (int i = 0; i < warmupIterations; i++)
+					iteration(executor, threads, op, new long[threads], new LatencyHistogram());
+
+				long[] threadOps = new long[threads];
+				LatencyHistogram latency = new LatencyHistogram();
+				long elapsed = 0;
+				for (int i = 0; i < measurementIterations; i++)
+					elapsed += iteration(executor, threads, op, threadOps, latency);
+				results.add(new Result(name, threads, elapsed, threadOps, latency));
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private long iteration(Executor executor, int threads, Operation op, long[] threadOps,
+			LatencyHistogram latency) throws InterruptedException {
+		AtomicInteger nextThreadIndex = new AtomicInteger();
+		return ConcurrentTimer.time(executor, threads, () -> {
+			int threadIndex = nextThreadIndex.getAndIncrement();
+			long now = System.nanoTime();
+			long deadline = now + iterationNanos;
+			long ops = 0;
+			for (int batch = 1; now < deadline;) {
+				op.run(threadIndex, ops++);
+				latency.record(System.nanoTime() - now - CLOCK_NANOS); // Sample the first call
+				for (int i = 1; i < batch; i++)
+					op.run(threadIndex, ops++);
+				long end = System.nanoTime();
+				if (end - now < BATCH_NANOS && batch < 1 << 30)
+					batch *= 2;
+				else if (end - now > 4 * BATCH_NANOS && batch > 1)
+					batch /= 2;
+				now = end;
+			}
+			// Visible to the timer thread when the done latch opens
+			threadOps[threadIndex] += ops;
+		});
+	}
+
+	public static String toCsv(List<Result> results) {
+		StringBuilder sb = new StringBuilder(
+				"benchmark,threads,ops,ops_per_sec,mean_ns,p50_ns,p99_ns,p999_ns,max_ns,min_thread_ops,max_thread_ops\n");
+		for (Result r : results) {
+			LatencyHistogram h = r.latency();
+			sb.append(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%d,%d,%d,%d,%d,%d%n", r.name(), r.threads(),
+					r.totalOps(), r.opsPerSecond(), h.mean(), h.percentile(0.5), h.percentile(0.99),
+					h.percentile(0.999), h.max(), Arrays.stream(r.threadOps).min().getAsLong(),
+					Arrays.stream(r.threadOps).max().getAsLong()));
+		}
+		return sb.toString();
+	}
+
+	public static String toJson(List<Result> results) {
+		StringJoiner array = new StringJoiner(",\n  ", "[\n  ", "\n]\n");
+		for (Result r : results) {
+			LatencyHistogram h = r.latency();
+			array.add(String.format(Locale.ROOT,
+					"{\"benchmark\": \"%s\", \"threads\": %d, \"ops\": %d, \"opsPerSec\": %.1f, "
+							+ "\"meanNs\": %.1f, \"p50Ns\": %d, \"p99Ns\": %d, \"p999Ns\": %d, \"maxNs\": %d, "
+							+ "\"threadOps\": %s}",
+					r.name().replace("\\", "\\\\").replace("\"", "\\\""), r.threads(), r.totalOps(),
+					r.opsPerSecond(), h.mean(), h.percentile(0.5), h.percentile(0.99), h.percentile(0.999),
+					h.max(), Arrays.toString(r.threadOps)));
+		}
+		return array.toString();
+	}
+
+	// Compares Intern Version 1 with Version 2: java ConcurrentBenchmark [maxThreads] [csv|json]
+	public static void main(String[] args) throws InterruptedException {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		boolean json = args.length > 1 && args[1].equals("json");
+
+		String[] words = new String[10_000];
+		for (int i = 0; i < words.length; i++)
+			words[i] = "word" + i;
+
+		ConcurrentBenchmark benchmark = new Builder().threadsUpTo(maxThreads).warmupIterations(2)
+				.measurementIterations(3).iterationMillis(300).build();
+		List<Result> results = new ArrayList<>();
+		results.addAll(benchmark.run("internSlow",
+				(t, i) -> Intern.internSlow(words[(int) ((i * 7919 + t) % words.length)])));
+		results.addAll(benchmark.run("intern",
+				(t, i) -> Intern.intern(words[(int) ((i * 7919 + t) % words.length)])));
+
+		System.out.print(json ? toJson(results) : toCsv(results));
+	}
+}
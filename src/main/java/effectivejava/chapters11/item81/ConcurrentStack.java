@@ -0,0 +1,133 @@
+package effectivejava.chapters11.item81;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import effectivejava.chapter5.item31.EmptyStackException;
+
+/**
+ *
+ * Wrapping a Stack in synchronized blocks excludes all concurrent activity,
+ * so throughput collapses as soon as a handful of threads contend for the
+ * lock. Like the concurrent collections in java.util.concurrent, this stack
+ * manages its own synchronization internally: it is a Treiber stack, in which
+ * push and pop compare-and-set a single head reference instead of taking a
+ * lock.
+ *
+ * Under heavy contention the head becomes a hot spot, so a thread whose CAS
+ * fails backs off to an elimination array before retrying. A push parked in a
+ * slot can be taken directly by a concurrent pop; the pair cancel each other
+ * out without ever touching the head [Herlihy08, 11.4].
+ *
+ * Null elements are not permitted, as in the other concurrent collections.
+ * The bulk methods keep the PECS signatures of the generic Stack (Item 31).
+ *
+ */
+// Lock-free stack with elimination backoff
+public class ConcurrentStack<E> {
+	private static final int SPINS = 64; // How long a push waits in a slot
+
+	private static class Node<E> {
+		final E item;
+		Node<E> next;
+
+		Node(E item) {
+			this.item = item;
+		}
+	}
+
+	private final AtomicReference<Node<E>> head = new AtomicReference<>();
+
+	// Each slot is either null or holds a push waiting to be eliminated
+	private final AtomicReferenceArray<Node<E>> eliminationArray = new AtomicReferenceArray<>(
+			Math.min(Runtime.getRuntime().availableProcessors(), 16));
+
+	public void push(E e) {
+		Node<E> node = new Node<>(Objects.requireNonNull(e));
+		while (true) {
+			Node<E> h = head.get();
+			node.next = h;
+			if (head.compareAndSet(h, node) || tryEliminatePush(node))
+				return;
+		}
+	}
+
+	public E pop() {
+		E result = poll();
+		if (result == null)
+			throw new EmptyStackException();
+		return result;
+	}
+
+	/**
+	 * Removes and returns the top of this stack, or returns null if this stack
+	 * is empty.
+	 */
+	public E poll() {
+		while (true) {
+			Node<E> h = head.get();
+			if (h == null)
+				return null;
+			if (head.compareAndSet(h, h.next))
+				return h.item;
+			Node<E> other = tryEliminatePop();
+			if (other != null)
+				return other.item;
+		}
+	}
+
+	public boolean isEmpty() {
+		return head.get() == null;
+	}
+
+	// Wildcard type for parameter that serves as an E producer
+	public void pushAll(Iterable<? extends E> src) {
+		for (E e : src)
+			push(e);
+	}
+
+	// Wildcard type for parameter that serves as an E consumer. Detaches the
+	// whole chain with a single atomic swap, so elements pushed concurrently
+	// are either all popped or left on the stack.
+	public void popAll(Collection<? super E> dst) {
+		for (Node<E> n = head.getAndSet(null); n != null; n = n.next)
+			dst.add(n.item);
+	}
+
+	// Parks node in a random slot; returns true if a pop took it meanwhile
+	private boolean tryEliminatePush(Node<E> node) {
+		int slot = randomSlot();
+		if (!eliminationArray.compareAndSet(slot, null, node))
+			return false;
+		for (int i = 0; i < SPINS; i++) {
+			if (eliminationArray.get(slot) != node)
+				return true;
+			Thread.onSpinWait();
+		}
+		// Withdraw the offer; if that fails, a pop took it after all
+		return !eliminationArray.compareAndSet(slot, node, null);
+	}
+
+	// Takes a push parked in a random slot, or returns null if there is none
+	private Node<E> tryEliminatePop() {
+		int slot = randomSlot();
+		Node<E> node = eliminationArray.get(slot);
+		return node != null && eliminationArray.compareAndSet(slot, node, null) ? node : null;
+	}
+
+	private int randomSlot() {
+		return ThreadLocalRandom.current().nextInt(eliminationArray.length());
+	}
+
+	public static void main(String[] args) {
+		ConcurrentStack<Number> stack = new ConcurrentStack<>();
+		stack.pushAll(Arrays.asList(3, 1, 4, 1, 5, 9));
+		System.out.println(stack.pop());
+
+		Collection<Object> objects = new ArrayList<>();
+		stack.popAll(objects);
+		System.out.println(objects);
+	}
+}
@@ -0,0 +1,51 @@
+package effectivejava.chapters11.item81;
+
+import java.util.concurrent.*;
+
+import effectivejava.chapter5.item31.Stack;
+
+/**
+ *
+ * Compares a synchronized item 31 Stack with ConcurrentStack as the number of
+ * contending threads grows. Each thread performs opsPerThread push/pop pairs.
+ * As noted in ConcurrentTimer, numbers from a harness like this are only a
+ * rough guide; use jmh for accurate microbenchmarks.
+ *
+ */
+// Contention benchmark for ConcurrentStack
+public class ConcurrentStackBenchmark {
+	public static void main(String[] args) throws InterruptedException {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+
+		try {
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				Stack<Integer> stack = new Stack<>();
+				long syncNanos = ConcurrentTimer.time(executor, threads, () -> {
+					for (int i = 0; i < opsPerThread; i++) {
+						synchronized (stack) {
+							stack.push(i);
+						}
+						synchronized (stack) {
+							stack.pop();
+						}
+					}
+				});
+
+				ConcurrentStack<Integer> concurrentStack = new ConcurrentStack<>();
+				long lockFreeNanos = ConcurrentTimer.time(executor, threads, () -> {
+					for (int i = 0; i < opsPerThread; i++) {
+						concurrentStack.push(i);
+						concurrentStack.pop();
+					}
+				});
+
+				System.out.printf("%d threads: synchronized %.1f ms, lock-free %.1f ms%n", threads,
+						syncNanos / 1_000_000., lockFreeNanos / 1_000_000.);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}